@@ -34,6 +34,7 @@ public class SMB2DecryptedPacketData extends SMB2PacketData {
 
     public SMB2PacketData next() throws Buffer.BufferException {
         if (isCompounded()) {
+            dataBuffer.rpos(getHeader().getMessageEndPosition());
             return new SMB2DecryptedPacketData(dataBuffer);
         } else {
             return null;
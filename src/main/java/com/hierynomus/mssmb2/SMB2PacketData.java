@@ -77,6 +77,8 @@ public class SMB2PacketData extends SMBPacketData<SMB2PacketHeader> {
 
     public SMB2PacketData next() throws Buffer.BufferException {
         if (isCompounded()) {
+            // This message might not have been decoded (e.g. a discarded late response), so skip it explicitly
+            dataBuffer.rpos(getHeader().getMessageEndPosition());
             return new SMB2PacketData(dataBuffer);
         } else {
             return null;
@@ -85,10 +85,11 @@ public class SMB2PacketHeader implements SMBHeader {
     /**
      * [MS-SMB2] 3.2.4.1.2 Requesting Credits from the Server
      * <p>
-     * We should at least request the number of credits this request consumes, but we can request more (by calling {@link #setCreditRequest(int)}).
+     * The credits requested are exactly those set with {@link #setCreditRequest(int)}, if none were set we ask for the
+     * number of credits this request consumes.
      */
     private void writeCreditRequest(SMBBuffer buffer) {
-        buffer.putUInt16(creditRequest + creditCharge); // Ask for the credit buffer wanted + what we use
+        buffer.putUInt16(creditRequest > 0 ? creditRequest : creditCharge);
     }
 
     private void writeCreditCharge(SMBBuffer buffer) {
@@ -177,7 +178,7 @@ public class SMB2PacketHeader implements SMBHeader {
         byte[] protocolId = buffer.readRawBytes(4); // ProtocolId (4 bytes) (already verified)
         Check.ensureEquals(protocolId, PROTOCOL_ID, "Could not find SMB2 Packet header");
         buffer.skip(2); // StructureSize (2 bytes)
-        buffer.readUInt16(); // CreditCharge (2 bytes)
+        creditCharge = buffer.readUInt16(); // CreditCharge (2 bytes) (0 for the SMB 2.0.2 dialect)
         statusCode = buffer.readUInt32(); // Status (4 bytes)
         message = SMB2MessageCommandCode.lookup(buffer.readUInt16()); // Command (2 bytes)
         creditResponse = buffer.readUInt16(); // CreditRequest/CreditResponse (2 bytes)
@@ -62,7 +62,7 @@ public class SMB2IoctlRequest extends SMB2MultiCreditPacket {
         smbBuffer.putUInt32(0); // MaxInputResponse (4 bytes)
         smbBuffer.putUInt32(0); // OutputOffset (4 bytes)
         smbBuffer.putUInt32(0); // OutputCount (4 bytes)
-        smbBuffer.putUInt32(maxOutputResponse); // MaxOutputResponse (4 bytes)
+        smbBuffer.putUInt32(Math.min(maxOutputResponse, getPayloadSize())); // MaxOutputResponse (4 bytes)
         smbBuffer.putUInt32(fsctl ? 1 : 0); // Flags (4 bytes)
         smbBuffer.putReserved4(); // Reserved (4 bytes)
         while (inputData.bytesLeft() > 0) {
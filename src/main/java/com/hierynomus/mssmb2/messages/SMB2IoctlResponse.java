@@ -48,12 +48,12 @@ public class SMB2IoctlResponse extends SMB2Packet {
         buffer.skip(4); // Reserved2 (4 bytes)
 
         if (inputCount > 0) {
-            buffer.rpos(inputOffset);
+            buffer.rpos(header.getHeaderStartPosition() + inputOffset);
             inputBuffer = buffer.readRawBytes(inputCount);
         }
 
         if (outputCount > 0) {
-            buffer.rpos(outputOffset);
+            buffer.rpos(header.getHeaderStartPosition() + outputOffset);
             outputBuffer = buffer.readRawBytes(outputCount);
         }
 
@@ -66,7 +66,7 @@ public class SMB2NegotiateResponse extends SMB2Packet {
 
     private List<SMB2NegotiateContext> readNegotiateContextList(SMBBuffer buffer, int negotiateContextOffset, @SuppressWarnings("unused") int negotiateContextCount) {
         if (dialect == SMB2Dialect.SMB_3_1_1) {
-            buffer.rpos(negotiateContextOffset);
+            buffer.rpos(header.getHeaderStartPosition() + negotiateContextOffset);
             try {
                 List<SMB2NegotiateContext> negotiateContextList = new ArrayList<>();
                 for (int i = 0; i < negotiateContextCount; i++) {
@@ -88,7 +88,7 @@ public class SMB2NegotiateResponse extends SMB2Packet {
     private byte[] readSecurityBuffer(SMBBuffer buffer, int securityBufferOffset, int securityBufferLength) throws Buffer.BufferException {
         if (securityBufferLength > 0) {
             // Set the read pos to the start of the security buffer offset.
-            buffer.rpos(securityBufferOffset);
+            buffer.rpos(header.getHeaderStartPosition() + securityBufferOffset);
             return buffer.readRawBytes(securityBufferLength);
         } else {
             return new byte[0];
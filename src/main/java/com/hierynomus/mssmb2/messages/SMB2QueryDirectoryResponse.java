@@ -32,7 +32,7 @@ public class SMB2QueryDirectoryResponse extends SMB2Packet {
         int outputBufferOffset = buffer.readUInt16(); // OutputBufferOffset (2 bytes)
         int outBufferLength = buffer.readUInt32AsInt(); // OutputBufferLength (4 bytes)
         if (outputBufferOffset > 0) {
-            buffer.rpos(outputBufferOffset);
+            buffer.rpos(header.getHeaderStartPosition() + outputBufferOffset); // Relative to the header, which is not at 0 in a compounded response
             outputBuffer = buffer.readRawBytes(outBufferLength);
         }
     }
@@ -27,9 +27,9 @@ import java.util.Set;
 /**
  * [MS-SMB2].pdf 2.2.37 SMB2 QUERY_INFO Request
  */
-public class SMB2QueryInfoRequest extends SMB2Packet {
+public class SMB2QueryInfoRequest extends SMB2MultiCreditPacket {
 
-    private static final long MAX_OUTPUT_BUFFER_LENGTH = 64 * 1024L;
+    private static final int MAX_OUTPUT_BUFFER_LENGTH = 64 * 1024;
 
     private final SMB2FileId fileId;
     private final SMB2QueryInfoType infoType;
@@ -45,8 +45,24 @@ public class SMB2QueryInfoRequest extends SMB2Packet {
                                 FileSystemInformationClass fileSystemInformationClass,
                                 byte[] inputBuffer,
                                 Set<SecurityInformation> securityInformation) {
+        this(smbDialect, sessionId, treeId, fileId, infoType, fileInformationClass, fileSystemInformationClass,
+            inputBuffer, securityInformation, MAX_OUTPUT_BUFFER_LENGTH);
+    }
+
+    /**
+     * @param maxOutputBufferLength the largest response the server may send, which is reduced to what the credits
+     *                              assigned to this request allow
+     */
+    public SMB2QueryInfoRequest(SMB2Dialect smbDialect,
+                                long sessionId, long treeId,
+                                SMB2FileId fileId, SMB2QueryInfoType infoType,
+                                FileInformationClass fileInformationClass,
+                                FileSystemInformationClass fileSystemInformationClass,
+                                byte[] inputBuffer,
+                                Set<SecurityInformation> securityInformation,
+                                int maxOutputBufferLength) {
 
-        super(41, smbDialect, SMB2MessageCommandCode.SMB2_QUERY_INFO, sessionId, treeId);
+        super(41, smbDialect, SMB2MessageCommandCode.SMB2_QUERY_INFO, sessionId, treeId, maxOutputBufferLength);
         this.infoType = infoType;
         this.fileInformationClass = fileInformationClass;
         this.fileSystemInformationClass = fileSystemInformationClass;
@@ -65,7 +81,7 @@ public class SMB2QueryInfoRequest extends SMB2Packet {
         switch (infoType) { // FileInfoClass 1 byte
             case SMB2_0_INFO_FILE:
                 buffer.putByte((byte) fileInformationClass.getValue()); // FileInformationClass (1 byte)
-                buffer.putUInt32(MAX_OUTPUT_BUFFER_LENGTH); // OutputBufferLength (4 bytes)
+                buffer.putUInt32(getPayloadSize()); // OutputBufferLength (4 bytes)
                 if (fileInformationClass == FileInformationClass.FileFullEaInformation) {
                     buffer.putUInt16(offset); // InputBufferOffset (2 bytes)
                     buffer.putReserved2(); // Reserved (2 bytes)
@@ -82,7 +98,7 @@ public class SMB2QueryInfoRequest extends SMB2Packet {
                 break;
             case SMB2_0_INFO_FILESYSTEM:
                 buffer.putByte((byte) fileSystemInformationClass.getValue()); // FileSystemInformationClass (1 byte)
-                buffer.putUInt32(MAX_OUTPUT_BUFFER_LENGTH); // OutputBufferLength (4 bytes)
+                buffer.putUInt32(getPayloadSize()); // OutputBufferLength (4 bytes)
                 buffer.putUInt16(0); // InputBufferOffset (2 bytes)
                 buffer.putReserved2(); // Reserved (2 bytes)
                 buffer.putUInt32(0); // Input Buffer length (4 bytes)
@@ -92,7 +108,7 @@ public class SMB2QueryInfoRequest extends SMB2Packet {
                 break;
             case SMB2_0_INFO_SECURITY:
                 buffer.putByte((byte) 0);
-                buffer.putUInt32(MAX_OUTPUT_BUFFER_LENGTH); // OutputBufferLength (4 bytes)
+                buffer.putUInt32(getPayloadSize()); // OutputBufferLength (4 bytes)
                 buffer.putUInt16(0); // InputBufferOffset (2 bytes)
                 buffer.putReserved2(); // Reserved (2 bytes)
                 buffer.putUInt32(0); // Input Buffer length (4 bytes)
@@ -102,7 +118,7 @@ public class SMB2QueryInfoRequest extends SMB2Packet {
                 break;
             case SMB2_0_INFO_QUOTA:
                 buffer.putByte((byte) 0);
-                buffer.putUInt32(MAX_OUTPUT_BUFFER_LENGTH); // OutputBufferLength (4 bytes)
+                buffer.putUInt32(getPayloadSize()); // OutputBufferLength (4 bytes)
                 buffer.putUInt16(offset); // InputBufferOffset (2 bytes)
                 buffer.putReserved2(); // Reserved (2 bytes)
                 buffer.putUInt32(inputBuffer.length); // Input Buffer length (4 bytes)
@@ -19,31 +19,98 @@ import com.hierynomus.mssmb2.SMB2Packet;
 import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.smb.SMBBuffer;
 
+import java.nio.ByteBuffer;
+
 /**
  * [MS-SMB2].pdf 2.2.20 SMB2 READ Response
+ * <p>
+ * The data is not copied out of the received packet when the response is read. Use {@link #readData(int, byte[], int, int)},
+ * {@link #readData(int, ByteBuffer)} or {@link #getDataSlice()} to access it without an intermediate copy.
  */
 public class SMB2ReadResponse extends SMB2Packet {
 
     private int dataLength;
+    private byte[] packetData;
+    private int dataStart;
     private byte[] data;
 
     @Override
     protected void readMessage(SMBBuffer buffer) throws Buffer.BufferException {
         buffer.skip(2); // StructureSize (2 bytes)
-        byte dataOffset = buffer.readByte(); // DataOffset (1 byte)
+        int dataOffset = buffer.readByte() & 0xFF; // DataOffset (1 byte)
         buffer.skip(1); // Reserved (1 byte)
         dataLength = buffer.readUInt32AsInt(); // DataLength (4 bytes)
         buffer.readUInt32AsInt(); // DataRemaining (4 bytes)
         buffer.skip(4); // Reserved2 (4 bytes)
-        buffer.rpos(dataOffset);
-        data = buffer.readRawBytes(dataLength); // Buffer (variable)
+        // The offset is relative to the header, which is not at 0 in a compounded response
+        dataStart = header.getHeaderStartPosition() + dataOffset;
+        buffer.rpos(dataStart);
+        buffer.skip(dataLength); // Buffer (variable), ensures the data is present
+        packetData = buffer.array();
     }
 
     public int getDataLength() {
         return dataLength;
     }
 
+    /**
+     * Returns a copy of the data that was read. The copy is made on the first call.
+     *
+     * @return the data, or <code>null</code> if this is an error response
+     */
     public byte[] getData() {
+        if (data == null && packetData != null) {
+            data = new byte[dataLength];
+            if (dataLength > 0) {
+                System.arraycopy(packetData, dataStart, data, 0, dataLength);
+            }
+        }
         return data;
     }
+
+    /**
+     * Copy data starting at <code>position</code> into <code>dest</code>.
+     *
+     * @param position   the position in the read data to start copying from
+     * @param dest       the destination array
+     * @param destOffset the offset in <code>dest</code> at which to write
+     * @param length     the maximum number of bytes to copy
+     * @return the number of bytes copied
+     */
+    public int readData(int position, byte[] dest, int destOffset, int length) {
+        int len = Math.min(length, dataLength - position);
+        if (len <= 0) {
+            return 0;
+        }
+        System.arraycopy(packetData, dataStart + position, dest, destOffset, len);
+        return len;
+    }
+
+    /**
+     * Copy as much data as fits, starting at <code>position</code>, into the remaining space of <code>dest</code>.
+     *
+     * @param position the position in the read data to start copying from
+     * @param dest     the destination buffer
+     * @return the number of bytes copied
+     */
+    public int readData(int position, ByteBuffer dest) {
+        int len = Math.min(dest.remaining(), dataLength - position);
+        if (len <= 0) {
+            return 0;
+        }
+        dest.put(packetData, dataStart + position, len);
+        return len;
+    }
+
+    /**
+     * Returns a read-only view on the data in the received packet.
+     *
+     * @return a buffer with position 0 and limit {@link #getDataLength()}
+     */
+    public ByteBuffer getDataSlice() {
+        if (dataLength == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(packetData, dataStart, dataLength).slice().asReadOnlyBuffer();
+    }
 }
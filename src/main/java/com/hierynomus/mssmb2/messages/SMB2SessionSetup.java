@@ -79,7 +79,7 @@ public class SMB2SessionSetup extends SMB2Packet {
     private byte[] readSecurityBuffer(SMBBuffer buffer, int securityBufferOffset, int securityBufferLength) throws Buffer.BufferException {
         if (securityBufferLength > 0) {
             // Just to be sure, we should already be there.
-            buffer.rpos(securityBufferOffset);
+            buffer.rpos(header.getHeaderStartPosition() + securityBufferOffset);
             return buffer.readRawBytes(securityBufferLength);
         } else {
             return new byte[0];
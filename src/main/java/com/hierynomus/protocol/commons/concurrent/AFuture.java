@@ -15,14 +15,235 @@
  */
 package com.hierynomus.protocol.commons.concurrent;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public abstract class AFuture<V> implements Future<V> {
     public interface Function<A, B> {
         B apply(A a);
     }
 
+    /**
+     * Notified once when a future completes, either with its value or with the error it failed with.
+     */
+    public interface Callback<V> {
+        void onSuccess(V value);
+
+        void onFailure(Throwable t);
+    }
+
     public <T> AFuture<T> map(Function<V, T> f) {
         return new TransformedFuture<>(this, f);
     }
+
+    /**
+     * Register a callback that is notified when this future completes. If the future has already completed, the
+     * callback is notified immediately on the calling thread, otherwise it is notified on the thread that completes
+     * the future, which for SMB responses is a response processing thread. Callbacks should therefore not block.
+     * <p>
+     * Subclasses should override this to notify the callback when they complete. The default implementation waits for
+     * this future on a separate thread.
+     *
+     * @param callback the callback to notify
+     */
+    public void onComplete(final Callback<? super V> callback) {
+        if (isDone()) {
+            notifyWhenDone(this, callback);
+            return;
+        }
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                notifyWhenDone(AFuture.this, callback);
+            }
+        }, "AFuture callback");
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
+    /**
+     * Register a callback that is notified on {@code executor} when this future completes. Use this for callbacks that
+     * send requests, as sending can block waiting for credits, which are only granted by processing responses.
+     *
+     * @param callback the callback to notify
+     * @param executor the executor to notify the callback on
+     */
+    public void onComplete(final Callback<? super V> callback, final Executor executor) {
+        onComplete(new Callback<V>() {
+            @Override
+            public void onSuccess(final V value) {
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onSuccess(value);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    callback.onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onFailure(t);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    t.addSuppressed(e);
+                    callback.onFailure(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a future that completes with the result of applying {@code f} to the value of this future once it is
+     * available. The function is applied exactly once. If this future fails, or the function throws any exception or
+     * error, the returned future fails as well.
+     *
+     * @param f the function to apply
+     * @return the future of the function's result
+     */
+    public <T> AFuture<T> thenApply(final Function<V, T> f) {
+        final SettableFuture<T> result = new SettableFuture<>();
+        onComplete(new Callback<V>() {
+            @Override
+            public void onSuccess(V value) {
+                T t;
+                try {
+                    t = f.apply(value);
+                } catch (Throwable e) {
+                    result.setException(e);
+                    return;
+                }
+                result.set(t);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(t);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns a future that completes with the result of the future returned by {@code f}, which is invoked with the
+     * value of this future once it is available. This chains asynchronous operations without blocking a thread
+     * in between.
+     *
+     * @param f the function that starts the next asynchronous operation
+     * @return the future of the next operation's result
+     */
+    public <T> AFuture<T> thenCompose(final Function<V, ? extends AFuture<T>> f) {
+        final SettableFuture<T> result = new SettableFuture<>();
+        onComplete(composer(f, result));
+        return result;
+    }
+
+    /**
+     * Like {@link #thenCompose(Function)}, but invokes {@code f} on {@code executor}. Use this when {@code f} sends
+     * requests, see {@link #onComplete(Callback, Executor)}.
+     *
+     * @param f        the function that starts the next asynchronous operation
+     * @param executor the executor to invoke the function on
+     * @return the future of the next operation's result
+     */
+    public <T> AFuture<T> thenCompose(final Function<V, ? extends AFuture<T>> f, Executor executor) {
+        final SettableFuture<T> result = new SettableFuture<>();
+        onComplete(composer(f, result), executor);
+        return result;
+    }
+
+    private static <V, T> Callback<V> composer(final Function<V, ? extends AFuture<T>> f, final SettableFuture<T> result) {
+        return new Callback<V>() {
+            @Override
+            public void onSuccess(V value) {
+                AFuture<T> next;
+                try {
+                    next = f.apply(value);
+                } catch (Throwable e) {
+                    result.setException(e);
+                    return;
+                }
+                next.onComplete(result.completer());
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(t);
+            }
+        };
+    }
+
+    /**
+     * Adapt this future to a {@link CompletableFuture}. Cancelling the returned future cancels this future.
+     * <p/>
+     * Note: on Android this requires API level 24 or core library desugaring.
+     *
+     * @return a {@link CompletableFuture} that completes when this future completes
+     */
+    public CompletableFuture<V> toCompletableFuture() {
+        final CompletableFuture<V> cf = new CompletableFuture<V>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                AFuture.this.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        onComplete(new Callback<V>() {
+            @Override
+            public void onSuccess(V value) {
+                cf.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                cf.completeExceptionally(t);
+            }
+        });
+        return cf;
+    }
+
+    /**
+     * Notify {@code callback} when {@code future} completes. Futures that do not support callbacks are waited for on
+     * the calling thread.
+     */
+    static <T> void onComplete(Future<T> future, Callback<? super T> callback) {
+        if (future instanceof AFuture) {
+            ((AFuture<T>) future).onComplete(callback);
+        } else {
+            notifyWhenDone(future, callback);
+        }
+    }
+
+    /**
+     * Wait for {@code future} on the calling thread and notify {@code callback} of its outcome.
+     */
+    private static <T> void notifyWhenDone(Future<T> future, Callback<? super T> callback) {
+        T value;
+        try {
+            value = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callback.onFailure(e);
+            return;
+        } catch (ExecutionException e) {
+            callback.onFailure(e.getCause() != null ? e.getCause() : e);
+            return;
+        } catch (CancellationException e) {
+            callback.onFailure(e);
+            return;
+        }
+        callback.onSuccess(value);
+    }
 }
@@ -74,6 +74,11 @@ public class CancellableFuture<V> extends AFuture<V> {
         }
     }
 
+    @Override
+    public void onComplete(Callback<? super V> callback) {
+        wrappedFuture.onComplete(callback);
+    }
+
     @Override
     public V get() throws InterruptedException, ExecutionException {
         return wrappedFuture.get();
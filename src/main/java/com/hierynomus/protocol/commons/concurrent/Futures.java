@@ -16,10 +16,13 @@
 package com.hierynomus.protocol.commons.concurrent;
 
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 import com.hierynomus.protocol.commons.concurrent.AFuture.Function;
 
@@ -55,4 +58,43 @@ public class Futures {
     public static <F, T> Future<T> transform(Future<F> future, Function<F, T> f) {
         return new TransformedFuture<F, T>(future, f);
     }
+
+    /**
+     * @return a future that has already completed with the given value.
+     */
+    public static <T> AFuture<T> completed(T value) {
+        SettableFuture<T> future = new SettableFuture<>();
+        future.set(value);
+        return future;
+    }
+
+    /**
+     * @return a future that has already failed with the given error.
+     */
+    public static <T> AFuture<T> failed(Throwable t) {
+        SettableFuture<T> future = new SettableFuture<>();
+        future.setException(t);
+        return future;
+    }
+
+    /**
+     * Adapt a {@link CompletionStage} to an {@link AFuture}, so that it can be combined with the futures of this
+     * library. Note: on Android this requires API level 24 or core library desugaring.
+     */
+    public static <T> AFuture<T> fromCompletionStage(CompletionStage<T> stage) {
+        final SettableFuture<T> future = new SettableFuture<>();
+        stage.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable t) {
+                if (t instanceof CompletionException && t.getCause() != null) {
+                    future.setException(t.getCause());
+                } else if (t != null) {
+                    future.setException(t);
+                } else {
+                    future.set(value);
+                }
+            }
+        });
+        return future;
+    }
 }
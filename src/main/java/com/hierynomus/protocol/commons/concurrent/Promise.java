@@ -18,6 +18,8 @@ package com.hierynomus.protocol.commons.concurrent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
@@ -41,6 +43,7 @@ public class Promise<V, T extends Throwable> {
 
     private V val;
     private T pendingEx;
+    private List<AFuture.Callback<? super V>> callbacks;
 
     /**
      * Creates this promise with given {@code name} and exception {@code wrapper}. Allocates a new {@link
@@ -73,14 +76,17 @@ public class Promise<V, T extends Throwable> {
      * @param val the value
      */
     public void deliver(V val) {
+        List<AFuture.Callback<? super V>> toNotify;
         lock.lock();
         try {
             logger.debug("Setting << {} >> to `{}`", name, val);
             this.val = val;
             cond.signalAll();
+            toNotify = takeCallbacks();
         } finally {
             lock.unlock();
         }
+        notifyCallbacks(toNotify);
     }
 
     /**
@@ -90,13 +96,77 @@ public class Promise<V, T extends Throwable> {
      * @param e the error
      */
     public void deliverError(Throwable e) {
+        List<AFuture.Callback<? super V>> toNotify;
         lock.lock();
         try {
             pendingEx = wrapper.wrap(e);
             cond.signalAll();
+            toNotify = takeCallbacks();
         } finally {
             lock.unlock();
         }
+        notifyCallbacks(toNotify);
+    }
+
+    /**
+     * Register a callback that is notified once this promise is delivered a value or an error. If the promise is
+     * already fulfilled, the callback is notified immediately on the calling thread, otherwise it is notified on the
+     * thread that delivers to this promise.
+     *
+     * @param callback the callback to notify
+     */
+    public void onComplete(AFuture.Callback<? super V> callback) {
+        lock.lock();
+        try {
+            if (pendingEx == null && val == null) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>(1);
+                }
+                callbacks.add(callback);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyCallback(callback);
+    }
+
+    private List<AFuture.Callback<? super V>> takeCallbacks() {
+        if (callbacks == null || (pendingEx == null && val == null)) {
+            return null;
+        }
+        List<AFuture.Callback<? super V>> toNotify = callbacks;
+        callbacks = null;
+        return toNotify;
+    }
+
+    private void notifyCallbacks(List<AFuture.Callback<? super V>> toNotify) {
+        if (toNotify != null) {
+            for (AFuture.Callback<? super V> callback : toNotify) {
+                notifyCallback(callback);
+            }
+        }
+    }
+
+    private void notifyCallback(AFuture.Callback<? super V> callback) {
+        V value;
+        T error;
+        lock.lock();
+        try {
+            value = val;
+            error = pendingEx;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (error != null) {
+                callback.onFailure(error);
+            } else {
+                callback.onSuccess(value);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Callback on << {} >> failed", name, e);
+        }
     }
 
     /**
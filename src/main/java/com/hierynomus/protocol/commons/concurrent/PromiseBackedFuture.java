@@ -39,7 +39,13 @@ public class PromiseBackedFuture<V> extends AFuture<V> {
 
     @Override
     public boolean isDone() {
-        return promise.isDelivered();
+        // A future that completed exceptionally is done as well
+        return promise.isFulfilled();
+    }
+
+    @Override
+    public void onComplete(Callback<? super V> callback) {
+        promise.onComplete(callback);
     }
 
     @Override
@@ -16,11 +16,15 @@
 package com.hierynomus.protocol.commons.concurrent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * SequencedFuture transforms a {@code List<Future<V>>} into a {@code Future<List<V>>}.
@@ -61,6 +65,41 @@ public class SequencedFuture<V> extends AFuture<List<V>> {
         return true;
     }
 
+    /**
+     * Notifies the callback with all values once every future succeeded, or with the first error as soon as any
+     * future fails.
+     */
+    @Override
+    public void onComplete(final Callback<? super List<V>> callback) {
+        if (futures.isEmpty()) {
+            callback.onSuccess(Collections.<V>emptyList());
+            return;
+        }
+        final Object[] values = new Object[futures.size()];
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            AFuture.onComplete(futures.get(i), new Callback<V>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void onSuccess(V value) {
+                    values[index] = value;
+                    if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                        callback.onSuccess((List<V>) Arrays.asList(values));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (failed.compareAndSet(false, true)) {
+                        callback.onFailure(t);
+                    }
+                }
+            });
+        }
+    }
+
     @Override
     public List<V> get() throws InterruptedException, ExecutionException {
         List<V> collector = new ArrayList<V>();
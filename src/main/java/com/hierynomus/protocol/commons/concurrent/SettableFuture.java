@@ -0,0 +1,166 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A future that is completed explicitly through {@link #set(Object)} or {@link #setException(Throwable)}. Unlike a
+ * {@link Promise} it can be completed with a {@code null} value, which makes it suitable for chaining.
+ */
+public class SettableFuture<V> extends AFuture<V> {
+    private static final Logger logger = LoggerFactory.getLogger(SettableFuture.class);
+
+    private List<Callback<? super V>> callbacks = new ArrayList<>();
+    private boolean done;
+    private boolean cancelled;
+    private V value;
+    private Throwable error;
+
+    /**
+     * Complete this future with a value.
+     *
+     * @param value the value, may be {@code null}
+     * @return {@code true} if this call completed the future, {@code false} if it was already completed
+     */
+    public boolean set(V value) {
+        return complete(value, null, false);
+    }
+
+    /**
+     * Complete this future with an error.
+     *
+     * @param t the error
+     * @return {@code true} if this call completed the future, {@code false} if it was already completed
+     */
+    public boolean setException(Throwable t) {
+        return complete(null, t, false);
+    }
+
+    /**
+     * @return a callback that completes this future with the outcome it is notified of.
+     */
+    public Callback<V> completer() {
+        return new Callback<V>() {
+            @Override
+            public void onSuccess(V value) {
+                set(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                setException(t);
+            }
+        };
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, new CancellationException("Future was cancelled"), true);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return report();
+    }
+
+    @Override
+    public synchronized V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!done) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException("Timeout expired");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return report();
+    }
+
+    @Override
+    public void onComplete(Callback<? super V> callback) {
+        synchronized (this) {
+            if (!done) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    private boolean complete(V value, Throwable error, boolean cancelled) {
+        List<Callback<? super V>> toNotify;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.done = true;
+            this.cancelled = cancelled;
+            this.value = value;
+            this.error = error;
+            toNotify = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        for (Callback<? super V> callback : toNotify) {
+            notifyCallback(callback);
+        }
+        return true;
+    }
+
+    private void notifyCallback(Callback<? super V> callback) {
+        try {
+            if (error != null) {
+                callback.onFailure(error);
+            } else {
+                callback.onSuccess(value);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Callback {} failed", callback, e);
+        }
+    }
+
+    private V report() throws ExecutionException {
+        if (cancelled) {
+            throw (CancellationException) error;
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return value;
+    }
+}
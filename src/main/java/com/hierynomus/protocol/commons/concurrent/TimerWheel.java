@@ -0,0 +1,225 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.protocol.commons.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timer wheel for large numbers of short timeouts that are mostly cancelled before they expire, like request
+ * deadlines. Scheduling and cancelling are O(1) and do not take a lock. Expiry is checked once every tick, so timeouts
+ * fire up to one tick late.
+ * <p/>
+ * The timer thread is started when the first timeout is scheduled and stops again once no timeouts are left, so an
+ * idle timer does not keep a thread around. Tasks run on the timer thread and should not block.
+ */
+public class TimerWheel {
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final String name;
+    private final long tickNanos;
+    private final List<List<Timeout>> wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final long startTime = System.nanoTime();
+    private long tick;
+    private Thread thread;
+    private boolean stopped;
+
+    /**
+     * @param name         The name of the timer thread
+     * @param tickDuration The resolution of the timer
+     * @param unit         The unit of the tick duration
+     * @param wheelSize    The number of buckets, rounded up to a power of 2. Timeouts further away than
+     *                     <code>wheelSize</code> ticks share their bucket with nearer ones.
+     */
+    public TimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Wheel size must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.name = name;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new ArrayList<>(Math.max(size, 1));
+        for (int i = 0; i < Math.max(size, 1); i++) {
+            wheel.add(new ArrayList<Timeout>());
+        }
+        this.mask = wheel.size() - 1;
+    }
+
+    /**
+     * Schedule a task to run once the delay expired, unless the returned timeout is cancelled before.
+     *
+     * @param task  The task to run on the timer thread
+     * @param delay The delay after which the task runs
+     * @param unit  The unit of the delay
+     * @return The timeout, which can be cancelled
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        active.incrementAndGet();
+        scheduled.add(timeout);
+        synchronized (this) {
+            if (stopped) {
+                throw new IllegalStateException("TimerWheel " + name + " has been stopped");
+            }
+            if (thread == null) {
+                thread = new Thread(new Worker(), name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * @return The number of timeouts that are scheduled and neither expired nor cancelled.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Stop the timer thread, pending timeouts do not fire anymore.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            stopped = true;
+            t = thread;
+            thread = null;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private synchronized boolean stopIfIdle() {
+        if (stopped || (active.get() == 0 && scheduled.isEmpty())) {
+            thread = null;
+            return true;
+        }
+        return false;
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            tick = (System.nanoTime() - startTime) / tickNanos;
+            try {
+                while (!stopIfIdle()) {
+                    waitForNextTick();
+                    transferScheduled();
+                    expire(wheel.get((int) (tick & mask)));
+                    tick++;
+                }
+            } catch (InterruptedException e) {
+                logger.debug("{} interrupted", name);
+            }
+        }
+
+        private void waitForNextTick() throws InterruptedException {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+        }
+
+        private void transferScheduled() {
+            Timeout timeout;
+            while ((timeout = scheduled.poll()) != null) {
+                if (timeout.task == null) {
+                    continue;
+                }
+                long ticks = Math.max((timeout.deadline - startTime + tickNanos - 1) / tickNanos, tick);
+                wheel.get((int) (ticks & mask)).add(timeout);
+            }
+        }
+
+        private void expire(List<Timeout> bucket) {
+            long now = System.nanoTime();
+            Iterator<Timeout> it = bucket.iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.task == null) {
+                    it.remove();
+                } else if (timeout.deadline - now <= 0) {
+                    it.remove();
+                    timeout.expire();
+                }
+            }
+        }
+    }
+
+    /**
+     * A scheduled task. Cancelling it drops the reference to the task straight away, the timeout itself is removed
+     * from the wheel the next time its bucket is visited.
+     */
+    public final class Timeout {
+        private volatile Runnable task;
+        private final long deadline;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return <code>true</code> if this call cancelled the timeout, <code>false</code> if it already expired or
+         * was cancelled before
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (task == null) {
+                    return false;
+                }
+                task = null;
+            }
+            active.decrementAndGet();
+            return true;
+        }
+
+        private void expire() {
+            Runnable t;
+            synchronized (this) {
+                t = task;
+                if (t == null) {
+                    return;
+                }
+                task = null;
+            }
+            active.decrementAndGet();
+            try {
+                t.run();
+            } catch (RuntimeException e) {
+                logger.warn("Timeout task {} failed", t, e);
+            }
+        }
+    }
+}
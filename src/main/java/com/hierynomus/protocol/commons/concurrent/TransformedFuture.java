@@ -44,6 +44,28 @@ public class TransformedFuture<T, V> extends AFuture<V> {
         return wrapped.isDone();
     }
 
+    @Override
+    public void onComplete(final Callback<? super V> callback) {
+        AFuture.onComplete(wrapped, new Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                V v;
+                try {
+                    v = function.apply(value);
+                } catch (RuntimeException e) {
+                    callback.onFailure(e);
+                    return;
+                }
+                callback.onSuccess(v);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                callback.onFailure(t);
+            }
+        });
+    }
+
     @Override
     public V get() throws InterruptedException, ExecutionException {
         return function.apply(wrapped.get());
@@ -26,4 +26,12 @@ import com.hierynomus.protocol.commons.buffer.Buffer;
 public interface PacketSerializer<P extends Packet<B>, B extends Buffer<B>> {
 
     B write(P packet);
+
+    /**
+     * Hand back a buffer returned by {@link #write(Packet)} once its contents have been sent, so that it can be reused
+     * for a later packet. The buffer must not be used after it has been released.
+     *
+     * @param buffer The buffer returned by {@link #write(Packet)}
+     */
+    void release(Buffer<?> buffer);
 }
@@ -15,6 +15,7 @@
  */
 package com.hierynomus.smbj;
 
+import com.hierynomus.protocol.commons.concurrent.TimerWheel;
 import com.hierynomus.smbj.connection.Connection;
 import com.hierynomus.smbj.event.ConnectionClosed;
 import com.hierynomus.smbj.event.SMBEventBus;
@@ -26,7 +27,17 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.hierynomus.protocol.commons.IOUtils.closeSilently;
 
@@ -38,6 +49,9 @@ public class SMBClient implements Closeable {
      * The default TCP port for SMB
      */
     public static final int DEFAULT_PORT = 445;
+    private static final int RESPONSE_QUEUE_SIZE_PER_THREAD = 64;
+    private static final long REQUEST_TIMER_TICK_MILLIS = 100;
+    private static final int REQUEST_TIMER_WHEEL_SIZE = 512;
 
     private Map<String, Connection> connectionTable = new ConcurrentHashMap<>();
     private ServerList serverList = new ServerList();
@@ -46,6 +60,12 @@ public class SMBClient implements Closeable {
 
     private SMBEventBus bus;
 
+    private ExecutorService responseExecutor;
+
+    private ExecutorService continuationExecutor;
+
+    private TimerWheel requestTimer;
+
     public SMBClient() {
         this(SmbConfig.createDefaultConfig());
     }
@@ -91,7 +111,7 @@ public class SMBClient implements Closeable {
                 cachedConnection = cachedConnection.lease();
             }
             if (cachedConnection == null || !cachedConnection.isConnected()) {
-                Connection connection = new Connection(config, this, bus, serverList);
+                Connection connection = new Connection(config, this, bus, serverList, getResponseExecutor(), getRequestTimer());
                 try {
                     connection.connect(hostname, port);
                 } catch (IOException e) {
@@ -106,6 +126,81 @@ public class SMBClient implements Closeable {
         }
     }
 
+    /**
+     * The pool that all connections of this client process received packets on. When it is saturated, the reader
+     * thread of the transport processes the packet itself, which holds back reading from that connection. Once the
+     * client is closed, packets that still arrive are rejected, which fails the requests of their connection.
+     */
+    private ExecutorService getResponseExecutor() {
+        int threads = config.getResponseProcessingThreads();
+        if (threads == 0) {
+            return null;
+        }
+        if (responseExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * RESPONSE_QUEUE_SIZE_PER_THREAD), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "SMB Response Processor " + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                        if (executor.isShutdown()) {
+                            // Unlike CallerRunsPolicy, do not drop the packet silently, the connection fails instead
+                            throw new RejectedExecutionException("Response processing of " + SMBClient.this + " has been shut down");
+                        }
+                        r.run();
+                    }
+                });
+            executor.allowCoreThreadTimeOut(true);
+            responseExecutor = executor;
+        }
+        return responseExecutor;
+    }
+
+    /**
+     * The executor that runs the continuations of asynchronous operations that send the next request when a response
+     * arrives. Sending can block waiting for credits, which are granted by processing responses, so these must never
+     * run on a thread that processes responses. Its threads only live while there are continuations to run.
+     *
+     * @return The executor for continuations, shared by all connections of this client
+     */
+    public synchronized Executor getContinuationExecutor() {
+        if (continuationExecutor == null) {
+            continuationExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "SMB Continuation " + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        return continuationExecutor;
+    }
+
+    /**
+     * The timer that expires the requests of all connections of this client. Its thread only runs while requests are
+     * outstanding.
+     */
+    private TimerWheel getRequestTimer() {
+        if (!config.isRequestExpiration()) {
+            return null;
+        }
+        if (requestTimer == null) {
+            requestTimer = new TimerWheel("SMB Request Timer", REQUEST_TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS, REQUEST_TIMER_WHEEL_SIZE);
+        }
+        return requestTimer;
+    }
+
     @Handler
     @SuppressWarnings("unused")
     private void connectionClosed(ConnectionClosed event) {
@@ -130,6 +225,20 @@ public class SMBClient implements Closeable {
                 logger.debug("Exception was: ", e);
             }
         }
+        synchronized (this) {
+            if (responseExecutor != null) {
+                responseExecutor.shutdown();
+                responseExecutor = null;
+            }
+            if (continuationExecutor != null) {
+                continuationExecutor.shutdown();
+                continuationExecutor = null;
+            }
+            if (requestTimer != null) {
+                requestTimer.stop();
+                requestTimer = null;
+            }
+        }
     }
 
     public ServerList getServerList() {
@@ -45,11 +45,26 @@ import com.hierynomus.smb.SMBPacketData;
 import com.hierynomus.smbj.auth.Authenticator;
 import com.hierynomus.smbj.auth.NtlmAuthenticator;
 import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.connection.CreditRequestStrategy;
+import com.hierynomus.smbj.connection.PreferredMinimumCreditRequestStrategy;
 import com.hierynomus.smbj.transport.TransportLayerFactory;
 import com.hierynomus.smbj.transport.tcp.direct.DirectTcpTransportFactory;
+import com.hierynomus.smbj.transport.tcp.nio.NioDirectTcpTransportFactory;
 
 public final class SmbConfig {
     private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int DEFAULT_READ_AHEAD_WINDOW = 4;
+    private static final int DEFAULT_DOWNLOAD_PARALLELISM = 16;
+    private static final int DEFAULT_WRITE_WINDOW_SIZE = 4 * DEFAULT_BUFFER_SIZE;
+
+    private static final int DEFAULT_SELECTOR_THREADS = 2;
+    private static final int DEFAULT_TRANSPORT_READ_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_SOCKET_BUFFER_SIZE = 0; // use system default
+    private static final int DEFAULT_RESPONSE_PROCESSING_THREADS = -1; // depends on the transport
+    private static final int DEFAULT_NIO_RESPONSE_PROCESSING_THREADS = 4;
+
+    private static final long DEFAULT_CREDIT_WAIT_TIMEOUT = 5;
+    private static final TimeUnit DEFAULT_CREDIT_WAIT_TIMEOUT_UNIT = TimeUnit.SECONDS;
 
     private static final int DEFAULT_SO_TIMEOUT = 0;
     private static final TimeUnit DEFAULT_SO_TIMEOUT_UNIT = TimeUnit.SECONDS;
@@ -70,8 +85,12 @@ public final class SmbConfig {
     private SecurityProvider securityProvider;
     private int readBufferSize;
     private long readTimeout;
+    private int readAheadWindow;
+    private int downloadParallelism;
     private int writeBufferSize;
     private long writeTimeout;
+    private int writeWindowSize;
+    private boolean writeBehind;
     private int transactBufferSize;
     private TransportLayerFactory<SMBPacketData<?>, SMBPacket<?, ?>> transportLayerFactory;
     private long transactTimeout;
@@ -80,6 +99,14 @@ public final class SmbConfig {
     private NtlmConfig ntlmConfig;
 
     private int soTimeout;
+    private int selectorThreads;
+    private int transportReadBufferSize;
+    private int socketBufferSize;
+    private int responseProcessingThreads;
+    private long creditWaitTimeout;
+    private Factory<CreditRequestStrategy> creditRequestStrategyFactory;
+    private boolean requestExpiration;
+    private boolean compoundRequests;
 
     public static SmbConfig createDefaultConfig() {
         return builder().build();
@@ -94,8 +121,23 @@ public final class SmbConfig {
                 .withDfsEnabled(false)
                 .withMultiProtocolNegotiate(false)
                 .withBufferSize(DEFAULT_BUFFER_SIZE)
+                .withReadAheadWindow(DEFAULT_READ_AHEAD_WINDOW)
+                .withDownloadParallelism(DEFAULT_DOWNLOAD_PARALLELISM)
+                .withWriteWindowSize(DEFAULT_WRITE_WINDOW_SIZE)
                 .withTransportLayerFactory(DEFAULT_TRANSPORT_LAYER_FACTORY)
                 .withSoTimeout(DEFAULT_SO_TIMEOUT, DEFAULT_SO_TIMEOUT_UNIT)
+                .withSelectorThreads(DEFAULT_SELECTOR_THREADS)
+                .withTransportReadBufferSize(DEFAULT_TRANSPORT_READ_BUFFER_SIZE)
+                .withSocketBufferSize(DEFAULT_SOCKET_BUFFER_SIZE)
+                .withCreditWaitTimeout(DEFAULT_CREDIT_WAIT_TIMEOUT, DEFAULT_CREDIT_WAIT_TIMEOUT_UNIT)
+                .withRequestExpiration(true)
+                .withCompoundRequests(true)
+                .withCreditRequestStrategy(new Factory<CreditRequestStrategy>() {
+                    @Override
+                    public CreditRequestStrategy create() {
+                        return new PreferredMinimumCreditRequestStrategy();
+                    }
+                })
                 .withDialects(SMB_3_1_1, SMB_3_0_2, SMB_3_0, SMB_2_1, SMB_2_0_2)
                 // order is important.  The authenticators listed first will be selected
                 .withAuthenticators(getDefaultAuthenticators())
@@ -124,6 +166,7 @@ public final class SmbConfig {
         dialects = EnumSet.noneOf(SMB2Dialect.class);
         random = new SecureRandom();
         authenticators = new ArrayList<>();
+        responseProcessingThreads = DEFAULT_RESPONSE_PROCESSING_THREADS;
     }
 
     private SmbConfig(SmbConfig other) {
@@ -138,12 +181,24 @@ public final class SmbConfig {
         securityProvider = other.securityProvider;
         readBufferSize = other.readBufferSize;
         readTimeout = other.readTimeout;
+        readAheadWindow = other.readAheadWindow;
+        downloadParallelism = other.downloadParallelism;
         writeBufferSize = other.writeBufferSize;
         writeTimeout = other.writeTimeout;
+        writeWindowSize = other.writeWindowSize;
+        writeBehind = other.writeBehind;
         transactBufferSize = other.transactBufferSize;
         transactTimeout = other.transactTimeout;
         transportLayerFactory = other.transportLayerFactory;
         soTimeout = other.soTimeout;
+        selectorThreads = other.selectorThreads;
+        transportReadBufferSize = other.transportReadBufferSize;
+        socketBufferSize = other.socketBufferSize;
+        responseProcessingThreads = other.responseProcessingThreads;
+        creditWaitTimeout = other.creditWaitTimeout;
+        creditRequestStrategyFactory = other.creditRequestStrategyFactory;
+        requestExpiration = other.requestExpiration;
+        compoundRequests = other.compoundRequests;
         useMultiProtocolNegotiate = other.useMultiProtocolNegotiate;
         clientGSSContextConfig = other.clientGSSContextConfig;
         encryptData = other.encryptData;
@@ -194,6 +249,23 @@ public final class SmbConfig {
         return readTimeout;
     }
 
+    /**
+     * The maximum number of READ requests that a file input stream keeps outstanding. The effective window is shrunk
+     * when the connection runs low on credits.
+     */
+    public int getReadAheadWindow() {
+        return readAheadWindow;
+    }
+
+    /**
+     * The maximum number of READ requests that a download to a file channel keeps outstanding. As the ranges are
+     * written out of order, this can be much wider than the read ahead window. The number of READ requests in flight
+     * is further bounded by the credits the server has granted.
+     */
+    public int getDownloadParallelism() {
+        return downloadParallelism;
+    }
+
     public int getWriteBufferSize() {
         return writeBufferSize;
     }
@@ -202,6 +274,22 @@ public final class SmbConfig {
         return writeTimeout;
     }
 
+    /**
+     * The maximum number of bytes of WRITE requests that a synchronous write keeps in flight before it waits for the
+     * oldest response. A window that is not larger than the write buffer size results in stop-and-wait writes.
+     */
+    public int getWriteWindowSize() {
+        return writeWindowSize;
+    }
+
+    /**
+     * Whether file output streams send a full buffer without waiting for the server to acknowledge it. Failed writes
+     * are then reported on a subsequent write, flush or close of the stream.
+     */
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
     public int getTransactBufferSize() {
         return transactBufferSize;
     }
@@ -218,6 +306,76 @@ public final class SmbConfig {
         return soTimeout;
     }
 
+    /**
+     * The number of selector threads that a {@link com.hierynomus.smbj.transport.tcp.nio.NioDirectTcpTransportFactory}
+     * multiplexes all its connections over.
+     */
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    /**
+     * The size of the per-connection buffer that the NIO transport reads received data into.
+     */
+    public int getTransportReadBufferSize() {
+        return transportReadBufferSize;
+    }
+
+    /**
+     * The size of the socket send and receive buffers of the NIO transport, 0 keeps the system default.
+     */
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    /**
+     * The number of threads of the bounded pool that an {@link SMBClient} shares between its connections to decrypt,
+     * verify and decode received packets. With 0 the packets are processed on the reader thread of the transport.
+     * <p>
+     * When not configured, the {@link NioDirectTcpTransportFactory} gets a pool of its own, as its selector threads
+     * are shared between connections and must not be held up by processing, and the other transports process on
+     * their reader thread.
+     */
+    public int getResponseProcessingThreads() {
+        if (responseProcessingThreads >= 0) {
+            return responseProcessingThreads;
+        }
+        return transportLayerFactory instanceof NioDirectTcpTransportFactory ? DEFAULT_NIO_RESPONSE_PROCESSING_THREADS : 0;
+    }
+
+    /**
+     * The number of milliseconds a request waits for the server to grant credits when none are available, after which
+     * sending it fails. With 0 a request fails immediately when there are no credits. Waiting requests get their
+     * credits in the order in which they started waiting.
+     */
+    public long getCreditWaitTimeout() {
+        return creditWaitTimeout;
+    }
+
+    /**
+     * Whether requests that are not answered within their read, write or transact timeout are failed, cancelled on the
+     * server and removed from the connection, instead of staying outstanding until the connection closes.
+     */
+    public boolean isRequestExpiration() {
+        return requestExpiration;
+    }
+
+    /**
+     * Whether operations on a path that open it, send a single request on the handle and close it again (e.g.
+     * {@link com.hierynomus.smbj.share.DiskShare#getFileInformation(String)}) send the three requests as one compounded
+     * chain. When disabled, each request waits for the response to the previous one.
+     */
+    public boolean isCompoundRequests() {
+        return compoundRequests;
+    }
+
+    /**
+     * Creates the strategy, one per connection, that decides how many credits each request asks the server for.
+     */
+    public Factory<CreditRequestStrategy> getCreditRequestStrategyFactory() {
+        return creditRequestStrategyFactory;
+    }
+
     public SocketFactory getSocketFactory() {
         return socketFactory;
     }
@@ -361,6 +519,22 @@ public final class SmbConfig {
             return this;
         }
 
+        public Builder withReadAheadWindow(int readAheadWindow) {
+            if (readAheadWindow <= 0) {
+                throw new IllegalArgumentException("Read ahead window must be greater than zero");
+            }
+            config.readAheadWindow = readAheadWindow;
+            return this;
+        }
+
+        public Builder withDownloadParallelism(int downloadParallelism) {
+            if (downloadParallelism <= 0) {
+                throw new IllegalArgumentException("Download parallelism must be greater than zero");
+            }
+            config.downloadParallelism = downloadParallelism;
+            return this;
+        }
+
         public Builder withWriteBufferSize(int writeBufferSize) {
             if (writeBufferSize <= 0) {
                 throw new IllegalArgumentException("Write buffer size must be greater than zero");
@@ -374,6 +548,19 @@ public final class SmbConfig {
             return this;
         }
 
+        public Builder withWriteWindowSize(int writeWindowSize) {
+            if (writeWindowSize <= 0) {
+                throw new IllegalArgumentException("Write window size must be greater than zero");
+            }
+            config.writeWindowSize = writeWindowSize;
+            return this;
+        }
+
+        public Builder withWriteBehind(boolean writeBehind) {
+            config.writeBehind = writeBehind;
+            return this;
+        }
+
         public Builder withTransactBufferSize(int transactBufferSize) {
             if (transactBufferSize <= 0) {
                 throw new IllegalArgumentException("Transact buffer size must be greater than zero");
@@ -427,6 +614,64 @@ public final class SmbConfig {
             return this;
         }
 
+        public Builder withSelectorThreads(int selectorThreads) {
+            if (selectorThreads <= 0) {
+                throw new IllegalArgumentException("Selector threads must be greater than zero");
+            }
+            config.selectorThreads = selectorThreads;
+            return this;
+        }
+
+        public Builder withTransportReadBufferSize(int transportReadBufferSize) {
+            if (transportReadBufferSize <= 0) {
+                throw new IllegalArgumentException("Transport read buffer size must be greater than zero");
+            }
+            config.transportReadBufferSize = transportReadBufferSize;
+            return this;
+        }
+
+        public Builder withSocketBufferSize(int socketBufferSize) {
+            if (socketBufferSize < 0) {
+                throw new IllegalArgumentException("Socket buffer size should be either 0 (system default) or a positive value");
+            }
+            config.socketBufferSize = socketBufferSize;
+            return this;
+        }
+
+        public Builder withResponseProcessingThreads(int responseProcessingThreads) {
+            if (responseProcessingThreads < 0) {
+                throw new IllegalArgumentException("Response processing threads should be either 0 (reader thread) or a positive value");
+            }
+            config.responseProcessingThreads = responseProcessingThreads;
+            return this;
+        }
+
+        public Builder withCompoundRequests(boolean compoundRequests) {
+            config.compoundRequests = compoundRequests;
+            return this;
+        }
+
+        public Builder withRequestExpiration(boolean requestExpiration) {
+            config.requestExpiration = requestExpiration;
+            return this;
+        }
+
+        public Builder withCreditWaitTimeout(long timeout, TimeUnit timeoutUnit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Credit wait timeout should be either 0 (no waiting) or a positive value");
+            }
+            config.creditWaitTimeout = timeoutUnit.toMillis(timeout);
+            return this;
+        }
+
+        public Builder withCreditRequestStrategy(Factory<CreditRequestStrategy> creditRequestStrategyFactory) {
+            if (creditRequestStrategyFactory == null) {
+                throw new IllegalArgumentException("Credit request strategy factory may not be null");
+            }
+            config.creditRequestStrategyFactory = creditRequestStrategyFactory;
+            return this;
+        }
+
         public SmbConfig build() {
             if (config.dialects.isEmpty()) {
                 throw new IllegalStateException("At least one SMB dialect should be specified");
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asks the server for just enough credits to keep the requests that are actually being sent in flight.
+ * <p/>
+ * The strategy tracks the credits charged to outstanding requests, and the credits that requests wanted but could not
+ * get. The peak of this demand, which slowly decays when the load drops, determines the number of credits the
+ * connection should hold. Twice that peak is targeted, so that new requests can be sent while the responses for the
+ * outstanding ones are on their way. A shortfall against the target is spread over the outstanding requests, a surplus
+ * is returned by requesting one credit less than charged.
+ * <p/>
+ * The decisions are exposed through the getters, so they can be published as metrics.
+ */
+public class AdaptiveCreditRequestStrategy implements CreditRequestStrategy {
+    public static final int DEFAULT_MINIMUM_CREDITS = 16;
+    public static final int DEFAULT_MAXIMUM_CREDITS = 8192;
+    // The demand peak decays by 1/DECAY for each request sent
+    private static final int DECAY = 64;
+
+    private final int minimumCredits;
+    private final int maximumCredits;
+
+    private final AtomicInteger creditsInFlight = new AtomicInteger(0);
+    private final AtomicInteger requestsInFlight = new AtomicInteger(0);
+    private final AtomicInteger demandPeak = new AtomicInteger(0);
+    private volatile int targetCredits;
+    private volatile int availableCredits;
+
+    private final AtomicLong requestsSent = new AtomicLong(0);
+    private final AtomicLong creditsRequested = new AtomicLong(0);
+    private final AtomicLong creditsGranted = new AtomicLong(0);
+    private final AtomicLong shortRequests = new AtomicLong(0);
+
+    public AdaptiveCreditRequestStrategy() {
+        this(DEFAULT_MINIMUM_CREDITS, DEFAULT_MAXIMUM_CREDITS);
+    }
+
+    /**
+     * @param minimumCredits The number of credits the connection always tries to hold
+     * @param maximumCredits The number of credits above which no more credits are requested
+     */
+    public AdaptiveCreditRequestStrategy(int minimumCredits, int maximumCredits) {
+        if (minimumCredits <= 0 || maximumCredits < minimumCredits) {
+            throw new IllegalArgumentException("Invalid credit bounds [" + minimumCredits + ", " + maximumCredits + "]");
+        }
+        this.minimumCredits = minimumCredits;
+        this.maximumCredits = maximumCredits;
+        this.targetCredits = minimumCredits;
+    }
+
+    @Override
+    public int creditsToRequest(int creditsWanted, int creditCharge, int availableCredits) {
+        int inFlight = creditsInFlight.addAndGet(creditCharge);
+        int requests = requestsInFlight.incrementAndGet();
+        int shortfall = creditsWanted - creditCharge;
+        if (shortfall > 0) {
+            shortRequests.incrementAndGet();
+        }
+
+        int target = updateTarget(inFlight + shortfall);
+        // The credits in flight come back when their responses arrive, as long as we keep asking for them
+        int deficit = target - availableCredits - inFlight;
+        int request;
+        if (deficit > 0) {
+            request = creditCharge + (deficit + requests - 1) / requests;
+        } else if (deficit < 0) {
+            request = Math.max(creditCharge - 1, 1);
+        } else {
+            request = creditCharge;
+        }
+
+        this.availableCredits = availableCredits;
+        requestsSent.incrementAndGet();
+        creditsRequested.addAndGet(request);
+        return request;
+    }
+
+    private int updateTarget(int demand) {
+        int peak;
+        int newPeak;
+        do {
+            peak = demandPeak.get();
+            newPeak = Math.max(demand, peak - (peak + DECAY - 1) / DECAY);
+        } while (!demandPeak.compareAndSet(peak, newPeak));
+
+        int target = Math.min(Math.max(2 * newPeak, minimumCredits), maximumCredits);
+        this.targetCredits = target;
+        return target;
+    }
+
+    @Override
+    public void creditsGranted(int creditCharge, int creditsGranted, boolean interim) {
+        this.creditsGranted.addAndGet(creditsGranted);
+        if (!interim) {
+            decrementToZero(creditsInFlight, Math.max(creditCharge, 1));
+            decrementToZero(requestsInFlight, 1);
+        }
+    }
+
+    // Responses to requests that did not pass through this strategy (e.g. the negotiate) must not drive the counts negative
+    private static void decrementToZero(AtomicInteger counter, int delta) {
+        int current;
+        do {
+            current = counter.get();
+        } while (!counter.compareAndSet(current, Math.max(current - delta, 0)));
+    }
+
+    /**
+     * @return The number of credits charged to requests that have not been answered yet
+     */
+    public int getCreditsInFlight() {
+        return creditsInFlight.get();
+    }
+
+    /**
+     * @return The number of requests that have not been answered yet
+     */
+    public int getRequestsInFlight() {
+        return requestsInFlight.get();
+    }
+
+    /**
+     * @return The number of credits the strategy currently aims for the connection to hold
+     */
+    public int getTargetCredits() {
+        return targetCredits;
+    }
+
+    /**
+     * @return The number of available credits the last time a request was sent
+     */
+    public int getAvailableCredits() {
+        return availableCredits;
+    }
+
+    /**
+     * @return The total number of requests sent
+     */
+    public long getRequestsSent() {
+        return requestsSent.get();
+    }
+
+    /**
+     * @return The total number of credits requested from the server
+     */
+    public long getCreditsRequested() {
+        return creditsRequested.get();
+    }
+
+    /**
+     * @return The total number of credits granted by the server
+     */
+    public long getCreditsGranted() {
+        return creditsGranted.get();
+    }
+
+    /**
+     * @return The number of requests that were charged fewer credits than they wanted
+     */
+    public long getShortRequests() {
+        return shortRequests.get();
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveCreditRequestStrategy{" +
+            "creditsInFlight=" + getCreditsInFlight() +
+            ", requestsInFlight=" + getRequestsInFlight() +
+            ", targetCredits=" + getTargetCredits() +
+            ", requestsSent=" + getRequestsSent() +
+            ", creditsRequested=" + getCreditsRequested() +
+            ", creditsGranted=" + getCreditsGranted() +
+            ", shortRequests=" + getShortRequests() +
+            '}';
+    }
+}
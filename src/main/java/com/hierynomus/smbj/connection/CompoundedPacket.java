@@ -0,0 +1,107 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import static com.hierynomus.mssmb2.SMB2MessageFlag.SMB2_FLAGS_SIGNED;
+
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMB2PacketHeader;
+import com.hierynomus.smb.SMBBuffer;
+
+/**
+ * A chain of SMB2 requests that is sent to the server in a single transport frame [MS-SMB2] 3.2.4.1.4.
+ * <p>
+ * Every request in the chain starts on an 8-byte boundary and its NextCommand field contains the offset to the next
+ * request. When the chain is signed, every request is signed individually over its own bytes, including the padding
+ * up to the next request. When the chain needs to be encrypted, the whole chain should be wrapped in a single
+ * encrypted packet instead, in which case the requests are not signed.
+ */
+public class CompoundedPacket extends SMB2Packet {
+    private static final int ALIGNMENT = 8;
+    private static final int NEXT_COMMAND_OFFSET = 20;
+
+    private final List<SMB2Packet> packets;
+    private final PacketSignatory signatory;
+    private final SecretKey signingKey;
+
+    CompoundedPacket(List<SMB2Packet> packets, PacketSignatory signatory, SecretKey signingKey) {
+        if (packets.isEmpty()) {
+            throw new IllegalArgumentException("A compounded packet needs at least one request");
+        }
+        this.packets = packets;
+        this.signatory = signatory;
+        this.signingKey = signingKey;
+    }
+
+    List<SMB2Packet> getPackets() {
+        return packets;
+    }
+
+    @Override
+    public void write(SMBBuffer buffer) {
+        int chainStart = buffer.wpos();
+        for (int i = 0; i < packets.size(); i++) {
+            SMB2Packet packet = packets.get(i);
+            boolean last = i == packets.size() - 1;
+            if (signingKey != null) {
+                packet.getHeader().setFlag(SMB2_FLAGS_SIGNED);
+            }
+            int packetStart = buffer.wpos();
+            packet.write(buffer);
+            if (!last) {
+                int misalignment = (buffer.wpos() - chainStart) % ALIGNMENT;
+                if (misalignment != 0) {
+                    buffer.putReserved(ALIGNMENT - misalignment);
+                }
+                int nextCommandOffset = buffer.wpos() - packetStart;
+                packet.getHeader().setNextCommandOffset(nextCommandOffset);
+                writeUInt32(buffer.array(), packetStart + NEXT_COMMAND_OFFSET, nextCommandOffset);
+            }
+            if (signingKey != null) {
+                signatory.signInPlace(buffer, packetStart, buffer.wpos() - packetStart, signingKey);
+            }
+        }
+    }
+
+    private static void writeUInt32(byte[] array, int offset, int value) {
+        array[offset] = (byte) value;
+        array[offset + 1] = (byte) (value >> 8);
+        array[offset + 2] = (byte) (value >> 16);
+        array[offset + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * The header of the first request in the chain, which carries the session the chain is sent for.
+     */
+    @Override
+    public SMB2PacketHeader getHeader() {
+        return packets.get(0).getHeader();
+    }
+
+    @Override
+    public int getStructureSize() {
+        return packets.get(0).getStructureSize();
+    }
+
+    @Override
+    public String toString() {
+        return "Compounded" + packets;
+    }
+}
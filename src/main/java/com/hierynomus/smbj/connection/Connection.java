@@ -21,17 +21,26 @@ import static java.lang.String.format;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.UUID;
-import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.crypto.SecretKey;
 
 import com.hierynomus.mssmb.SMB1PacketFactory;
 import com.hierynomus.mssmb2.*;
 import com.hierynomus.mssmb2.messages.SMB2Cancel;
 import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.protocol.commons.concurrent.CancellableFuture;
 import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.commons.concurrent.TimerWheel;
 import com.hierynomus.protocol.transport.PacketFactory;
 import com.hierynomus.protocol.transport.PacketHandlers;
 import com.hierynomus.protocol.transport.PacketReceiver;
@@ -80,11 +89,15 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
     private SessionTable preauthSessionTable = new SessionTable();
     OutstandingRequests outstandingRequests = new OutstandingRequests();
     SequenceWindow sequenceWindow;
+    private CreditRequestStrategy creditRequestStrategy;
     private SMB2MessageConverter messageConverter = new SMB2MessageConverter();
     private PathResolver pathResolver;
 
     private final SMBClient client;
     final ServerList serverList;
+    private final Executor responseExecutor;
+    private final TimerWheel requestTimer;
+    private final AtomicLongArray requestTimeouts = new AtomicLongArray(SMB2MessageCommandCode.values().length);
 
     private PacketSignatory signatory;
     private PacketEncryptor encryptor;
@@ -93,15 +106,43 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         return client;
     }
 
+    /**
+     * @return The executor to run continuations on that send requests when a response arrives, see
+     * {@link SMBClient#getContinuationExecutor()}
+     */
+    public Executor getContinuationExecutor() {
+        return client.getContinuationExecutor();
+    }
+
     private SmbConfig config;
     TransportLayer<SMBPacket<?, ?>> transport;
     private final SMBEventBus bus;
-    private final ReentrantLock lock = new ReentrantLock();
+    private final SMBBufferPool bufferPool = new SMBBufferPool();
 
     public Connection(SmbConfig config, SMBClient client, SMBEventBus bus, ServerList serverList) {
+        this(config, client, bus, serverList, null);
+    }
+
+    /**
+     * @param responseExecutor The executor that decrypts, verifies and decodes the received packets, or
+     *                         <code>null</code> to process them on the reader thread of the transport.
+     */
+    public Connection(SmbConfig config, SMBClient client, SMBEventBus bus, ServerList serverList, Executor responseExecutor) {
+        this(config, client, bus, serverList, responseExecutor, null);
+    }
+
+    /**
+     * @param responseExecutor The executor that decrypts, verifies and decodes the received packets, or
+     *                         <code>null</code> to process them on the reader thread of the transport.
+     * @param requestTimer     The timer that expires requests that are not answered in time, or <code>null</code> to
+     *                         wait for a response for as long as the connection is up.
+     */
+    public Connection(SmbConfig config, SMBClient client, SMBEventBus bus, ServerList serverList, Executor responseExecutor, TimerWheel requestTimer) {
         this.config = config;
         this.client = client;
-        this.transport = config.getTransportLayerFactory().createTransportLayer(new PacketHandlers<>(new SMBPacketSerializer(), this, converter), config);
+        this.responseExecutor = responseExecutor;
+        this.requestTimer = requestTimer;
+        this.transport = config.getTransportLayerFactory().createTransportLayer(new PacketHandlers<>(new SMBPacketSerializer(bufferPool), this, converter), config);
         this.bus = bus;
         this.serverList = serverList;
         init();
@@ -109,15 +150,16 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
 
     private void init() {
         bus.subscribe(this);
-        this.sequenceWindow = new SequenceWindow();
+        this.sequenceWindow = new SequenceWindow(config.getCreditWaitTimeout());
+        this.creditRequestStrategy = config.getCreditRequestStrategyFactory().create();
         this.signatory = new PacketSignatory(config.getSecurityProvider());
-        this.encryptor = new PacketEncryptor(config.getSecurityProvider());
+        this.encryptor = new PacketEncryptor(config.getSecurityProvider(), bufferPool);
 
         this.packetHandlerChain = new SMB3DecryptingPacketHandler(sessionTable, encryptor).setNext(
             new SMB2CompoundedPacketHandler().setNext(
                 new SMB2IsOutstandingPacketHandler(outstandingRequests).setNext(
                     new SMB2SignatureVerificationPacketHandler(sessionTable, signatory).setNext(
-                        new SMB2CreditGrantingPacketHandler(sequenceWindow).setNext(
+                        new SMB2CreditGrantingPacketHandler(sequenceWindow, creditRequestStrategy).setNext(
                             new SMB2AsyncResponsePacketHandler(outstandingRequests).setNext(
                                 new SMB2ProcessResponsePacketHandler(messageConverter, outstandingRequests).setNext(
                                     new SMB1PacketHandler().setNext(new DeadLetterPacketHandler()))))))));
@@ -125,6 +167,8 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
 
     public Connection(Connection connection) {
         this.client = connection.client;
+        this.responseExecutor = connection.responseExecutor;
+        this.requestTimer = connection.requestTimer;
         this.config = connection.config;
         this.transport = connection.transport;
         this.bus = connection.bus;
@@ -209,56 +253,115 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
      * @return a Future to be used to retrieve the response packet
      * @throws TransportException When a transport level error occurred
      */
-    public <T extends SMB2Packet> Future<T> send(SMB2Packet packet) throws TransportException {
-        Future<T> f = null;
+    public <T extends SMB2Packet> AFuture<T> send(SMB2Packet packet) throws TransportException {
+        AFuture<T> f = null;
         if (!(packet.getPacket() instanceof SMB2Cancel)) {
-            // Need to lock around the sequence window calls to ensure no credits get stolen by another thread
-            lock.lock();
-            try {
-                int availableCredits = sequenceWindow.available();
-                int grantCredits = calculateGrantedCredits(packet, availableCredits);
-                if (availableCredits == 0) {
-                    logger.warn(
-                        "There are no credits left to send {}, will block until there are more credits available.",
-                        packet.getHeader().getMessage());
-                }
-                long[] messageIds = sequenceWindow.get(grantCredits);
-                packet.getHeader().setMessageId(messageIds[0]);
-                packet.getHeader().setCreditRequest(Math.max(SequenceWindow.PREFERRED_MINIMUM_CREDITS - availableCredits - grantCredits,
-                        grantCredits));
-                logger.debug("Granted {} (out of {}) credits to {}", grantCredits, availableCredits, packet);
-            } finally {
-                lock.unlock();
+            int creditsWanted = calculateCreditsWanted(packet);
+            if (sequenceWindow.available() == 0) {
+                logger.warn(
+                    "There are no credits left to send {}, will block until there are more credits available.",
+                    packet.getHeader().getMessage());
             }
-
-            Request request = new Request(packet.getPacket(), packet.getHeader().getMessageId(), UUID.randomUUID());
-            outstandingRequests.registerOutstanding(request);
-            f = request.getFuture(new CancelRequest(request, packet.getHeader().getSessionId()));
+            // The sequence window scales the credits down if not enough are available, without taking a lock
+            long[] messageIds = sequenceWindow.getUpTo(creditsWanted);
+            int grantCredits = messageIds.length;
+            int availableCredits = sequenceWindow.available();
+            packet.setCreditsAssigned(grantCredits);
+            packet.getHeader().setMessageId(messageIds[0]);
+            packet.getHeader().setCreditRequest(creditRequestStrategy.creditsToRequest(creditsWanted, grantCredits, availableCredits));
+            logger.debug("Granted {} (out of {}) credits to {}", grantCredits, availableCredits + grantCredits, packet);
+
+            f = registerOutstanding(packet);
         }
         transport.write(packet);
         return f;
     }
 
+    /**
+     * Send a chain of requests in a single transport frame [MS-SMB2] 3.2.4.1.4. Every request gets its own message id
+     * and credit charge, which are taken from the sequence window in one go, so that the chain is never sent partially.
+     *
+     * @param packets       the requests to send, in the order the server should process them
+     * @param signingKey    the key to sign every request in the chain with, or <code>null</code> to send them unsigned
+     * @param encryptionKey the key to encrypt the chain with, or <code>null</code> to send it in plain text
+     * @return a future for the response to every request, in the order of the requests
+     * @throws TransportException If the chain could not be written to the transport
+     */
+    public List<AFuture<SMB2Packet>> sendCompounded(List<SMB2Packet> packets, SecretKey signingKey, SecretKey encryptionKey) throws TransportException {
+        int[] creditCharges = new int[packets.size()];
+        int totalCredits = 0;
+        for (int i = 0; i < packets.size(); i++) {
+            creditCharges[i] = calculateCreditsWanted(packets.get(i));
+            totalCredits += creditCharges[i];
+        }
+        if (sequenceWindow.available() < totalCredits) {
+            logger.warn("There are not enough credits left to send a chain of {} requests, will block until there are more credits available.", packets.size());
+        }
+        long[] messageIds = sequenceWindow.get(totalCredits);
+        int availableCredits = sequenceWindow.available();
+        List<AFuture<SMB2Packet>> futures = new ArrayList<>(packets.size());
+        int next = 0;
+        for (int i = 0; i < packets.size(); i++) {
+            SMB2Packet packet = packets.get(i);
+            packet.setCreditsAssigned(creditCharges[i]);
+            packet.getHeader().setMessageId(messageIds[next]);
+            packet.getHeader().setCreditRequest(creditRequestStrategy.creditsToRequest(creditCharges[i], creditCharges[i], availableCredits));
+            next += creditCharges[i];
+            futures.add(this.<SMB2Packet>registerOutstanding(packet));
+        }
+        logger.debug("Granted {} credits to a chain of {} requests", totalCredits, packets.size());
+
+        SMB2Packet compounded = new CompoundedPacket(packets, encryptionKey == null ? signatory : null, encryptionKey == null ? signingKey : null);
+        if (encryptionKey != null) {
+            compounded = encryptor.encrypt(compounded, encryptionKey);
+        }
+        transport.write(compounded);
+        return futures;
+    }
+
+    private <T extends SMB2Packet> AFuture<T> registerOutstanding(SMB2Packet packet) {
+        Request request = new Request(packet.getPacket(), packet.getHeader().getMessageId());
+        outstandingRequests.registerOutstanding(request);
+        AFuture<T> f = request.getFuture(new CancelRequest(request, packet.getHeader().getSessionId()));
+        long timeout = requestTimeout(packet.getHeader().getMessage());
+        if (requestTimer != null && timeout > 0) {
+            request.expireAfter(requestTimer, timeout, new ExpireRequest(request, packet.getHeader().getMessage(), packet.getHeader().getSessionId(), timeout));
+        }
+        return f;
+    }
+
     <T extends SMB2Packet> T sendAndReceive(SMB2Packet packet) throws TransportException {
         return Futures.get(this.<T>send(packet), config.getTransactTimeout(), TimeUnit.MILLISECONDS, TransportException.Wrapper);
     }
 
-    private int calculateGrantedCredits(final SMB2Packet packet, final int availableCredits) {
-        final int grantCredits;
-        int maxPayloadSize = packet.getMaxPayloadSize();
-        int creditsNeeded = creditsNeeded(maxPayloadSize);
+    /**
+     * The time to wait for the response to a request, which matches the time the synchronous API waits for it.
+     * Requests that the server may legitimately keep pending for a long time do not expire.
+     */
+    private long requestTimeout(SMB2MessageCommandCode command) {
+        switch (command) {
+            case SMB2_READ:
+                return config.getReadTimeout();
+            case SMB2_WRITE:
+            case SMB2_FLUSH:
+                return config.getWriteTimeout();
+            case SMB2_CHANGE_NOTIFY:
+            case SMB2_LOCK:
+            case SMB2_OPLOCK_BREAK:
+            case SMB2_CANCEL:
+                return 0;
+            default:
+                return config.getTransactTimeout();
+        }
+    }
+
+    private int calculateCreditsWanted(final SMB2Packet packet) {
+        int creditsNeeded = creditsNeeded(packet.getMaxPayloadSize());
         if (creditsNeeded > 1 && !connectionContext.supportsMultiCredit()) {
             logger.trace("Connection to {} does not support multi-credit requests.", getRemoteHostname());
-            grantCredits = 1;
-        } else if (creditsNeeded < availableCredits) { // Scale the credits dynamically
-            grantCredits = creditsNeeded;
-        } else if (creditsNeeded > 1 && availableCredits > 1) { // creditsNeeded >= availableCredits
-            grantCredits = availableCredits - 1; // Keep 1 credit left for a simple request
-        } else {
-            grantCredits = 1;
+            return 1;
         }
-        packet.setCreditsAssigned(grantCredits);
-        return grantCredits;
+        return creditsNeeded;
     }
 
     /**
@@ -268,6 +371,41 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         return Math.abs((payloadSize - 1) / SINGLE_CREDIT_PAYLOAD_SIZE) + 1;
     }
 
+    /**
+     * Returns the number of credits that are currently available for sending requests on this connection.
+     *
+     * @return The number of available credits
+     */
+    public int getAvailableCredits() {
+        return sequenceWindow.available();
+    }
+
+    /**
+     * Returns the strategy that decides how many credits the requests on this connection ask for. Its state can be
+     * inspected to monitor the credit usage of the connection.
+     *
+     * @return The credit request strategy of this connection
+     */
+    public CreditRequestStrategy getCreditRequestStrategy() {
+        return creditRequestStrategy;
+    }
+
+    /**
+     * Returns the number of requests on this connection that expired without a response, by command.
+     *
+     * @return The number of expired requests for each command that had at least one
+     */
+    public Map<SMB2MessageCommandCode, Long> getRequestTimeouts() {
+        Map<SMB2MessageCommandCode, Long> timeouts = new EnumMap<>(SMB2MessageCommandCode.class);
+        for (SMB2MessageCommandCode command : SMB2MessageCommandCode.values()) {
+            long count = requestTimeouts.get(command.ordinal());
+            if (count > 0) {
+                timeouts.put(command, count);
+            }
+        }
+        return timeouts;
+    }
+
     /**
      * Returns the negotiated protocol details for this connection.
      *
@@ -278,8 +416,29 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
     }
 
     @Override
-    public void handle(SMBPacketData<?> uncheckedPacket) throws TransportException {
-        this.packetHandlerChain.handle(uncheckedPacket);
+    public void handle(final SMBPacketData<?> uncheckedPacket) throws TransportException {
+        if (responseExecutor == null) {
+            this.packetHandlerChain.handle(uncheckedPacket);
+            return;
+        }
+        // The transport only frames the packet, the handler chain runs on the response executor. Responses can then
+        // be processed out of order, but each one still completes the request with its own message id.
+        try {
+            responseExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        packetHandlerChain.handle(uncheckedPacket);
+                    } catch (TransportException | RuntimeException e) {
+                        logger.error("Failed to process packet << {} >>", uncheckedPacket, e);
+                        handleError(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Could not process packet << {} >>: {}", uncheckedPacket, e.getMessage());
+            handleError(new TransportException("Response processing has been shut down", e));
+        }
         // [MS-SMB2] 3.2.5.1.6 Handling Session Expiration
         // if (packet.getHeader().getStatus() == NtStatus.STATUS_NETWORK_SESSION_EXPIRED) {
         // TODO reauthenticate session!
@@ -375,6 +534,49 @@ public class Connection extends Pooled<Connection> implements Closeable, PacketR
         }
     }
 
+    /**
+     * [MS-SMB2] 3.2.6.1 Request Expiration Timer
+     * <p/>
+     * Fails a request that was not answered in time and cancels it on the server. The request stays registered as a
+     * tombstone for one more timeout, so that a late response (e.g. STATUS_CANCELLED) is recognised as such. After
+     * that the request is removed, a response that still arrives is treated as unknown, but still returns its credits.
+     */
+    private class ExpireRequest implements Runnable {
+        private final Request request;
+        private final SMB2MessageCommandCode command;
+        private final long sessionId;
+        private final long timeout;
+
+        ExpireRequest(Request request, SMB2MessageCommandCode command, long sessionId, long timeout) {
+            this.request = request;
+            this.command = command;
+            this.sessionId = sessionId;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void run() {
+            if (!outstandingRequests.isOutstanding(request.getMessageId())) {
+                return;
+            }
+            request.markExpired();
+            requestTimeouts.incrementAndGet(command.ordinal());
+            logger.warn("No response to {} request << {} >> within {} ms, cancelling it", command, request.getMessageId(), timeout);
+            request.getPromise().deliverError(new TimeoutException("Timeout expired waiting for response to " + command + " request"));
+            if (sessionTable.find(sessionId) != null) {
+                new CancelRequest(request, sessionId).cancel();
+            }
+            request.expireAfter(requestTimer, timeout, new Runnable() {
+                @Override
+                public void run() {
+                    if (outstandingRequests.reclaim(request.getMessageId())) {
+                        logger.warn("Server did not respond to cancelled {} request << {} >>, discarding it", command, request.getMessageId());
+                    }
+                }
+            });
+        }
+    }
+
     SessionTable getSessionTable() {
         return sessionTable;
     }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+/**
+ * Decides how many credits a request asks the server for in its CreditRequest field, see [MS-SMB2] 3.2.4.1.2
+ * Requesting Credits from the Server. A connection creates its own strategy instance, which is called concurrently by
+ * all threads sending requests on, and processing responses from, that connection.
+ */
+public interface CreditRequestStrategy {
+
+    /**
+     * Called for every request just before it is sent.
+     *
+     * @param creditsWanted    The credits the request would have liked to be charged for its payload
+     * @param creditCharge     The credits actually charged to the request, which can be less than <code>creditsWanted</code>
+     *                         if the connection was short on credits
+     * @param availableCredits The credits still available after charging this request
+     * @return The number of credits to request from the server, at least 1, which is sent as is in the CreditRequest
+     * field, so it includes the credits that replace those charged
+     */
+    int creditsToRequest(int creditsWanted, int creditCharge, int availableCredits);
+
+    /**
+     * Called for every response that is received.
+     *
+     * @param creditCharge   The credit charge of the request that is answered, as echoed by the server, which is 0 for
+     *                       the SMB 2.0.2 dialect
+     * @param creditsGranted The credits granted by the server in this response
+     * @param interim        Whether this is an interim response, in which case the request is still outstanding
+     */
+    void creditsGranted(int creditCharge, int creditsGranted, boolean interim);
+}
@@ -17,78 +17,48 @@ package com.hierynomus.smbj.connection;
 
 import com.hierynomus.smbj.common.SMBRuntimeException;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+/**
+ * [MS-SMB2] 3.2.1.2 Connection.OutstandingRequests, the requests that have been sent and are waiting for a response,
+ * indexed by their message id.
+ */
 public class OutstandingRequests {
-    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private Map<Long, Request> lookup = new HashMap<>();
-    private Map<UUID, Request> cancelLookup = new HashMap<>();
+    private final RequestTable lookup = new RequestTable();
 
-    public boolean isOutstanding(Long messageId) {
-        lock.readLock().lock();
-        try {
-            return lookup.containsKey(messageId);
-        } finally {
-            lock.readLock().unlock();
-        }
+    public boolean isOutstanding(long messageId) {
+        return lookup.get(messageId) != null;
     }
 
-    public Request getRequestByMessageId(Long messageId) {
-        lock.readLock().lock();
-        try {
-            return lookup.get(messageId);
-        } finally {
-            lock.readLock().unlock();
-        }
+    public Request getRequestByMessageId(long messageId) {
+        return lookup.get(messageId);
     }
 
-    Request getRequestByCancelId(UUID cancelId) {
-        lock.readLock().lock();
-        try {
-            return cancelLookup.get(cancelId);
-        } finally {
-            lock.readLock().unlock();
+    public Request receivedResponseFor(long messageId) {
+        Request r = lookup.remove(messageId);
+        if (r == null) {
+            throw new SMBRuntimeException("Unable to find outstanding request for messageId " + messageId);
         }
+        r.cancelExpiration();
+        return r;
     }
 
-    public Request receivedResponseFor(Long messageId) {
-        lock.writeLock().lock();
-        try {
-            Request r = lookup.remove(messageId);
-            if (r == null) {
-                throw new SMBRuntimeException("Unable to find outstanding request for messageId " + messageId);
-            }
-            cancelLookup.remove(r.getCancelId());
-            return r;
-        } finally {
-            lock.writeLock().unlock();
-        }
+    /**
+     * Remove an expired request for which no response arrived.
+     *
+     * @return <code>true</code> if the request was still outstanding
+     */
+    boolean reclaim(long messageId) {
+        return lookup.remove(messageId) != null;
     }
 
     void registerOutstanding(Request request) {
-        lock.writeLock().lock();
-        try {
-            lookup.put(request.getMessageId(), request);
-            cancelLookup.put(request.getCancelId(), request);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        lookup.put(request);
     }
 
     void handleError(Throwable t) {
-        lock.writeLock().lock();
-        try {
-            for (Long id : new HashSet<>(lookup.keySet())) {
-                Request removed = lookup.remove(id);
-                cancelLookup.remove(removed.getCancelId());
-                removed.getPromise().deliverError(t);
-            }
-        } finally {
-            lock.writeLock().unlock();
+        Request removed;
+        while ((removed = lookup.removeAny()) != null) {
+            removed.cancelExpiration();
+            removed.getPromise().deliverError(t);
         }
     }
 }
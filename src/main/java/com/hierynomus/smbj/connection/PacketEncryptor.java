@@ -37,9 +37,15 @@ public class PacketEncryptor {
     private SMB3EncryptionCipher cipher;
     private SMB2Dialect dialect;
     private AtomicInteger nonceCounter = new AtomicInteger(0);
+    private final SMBBufferPool bufferPool;
 
     public PacketEncryptor(SecurityProvider securityProvider) {
+        this(securityProvider, new SMBBufferPool());
+    }
+
+    PacketEncryptor(SecurityProvider securityProvider, SMBBufferPool bufferPool) {
         this.securityProvider = securityProvider;
+        this.bufferPool = bufferPool;
     }
 
     void init(ConnectionContext connectionContext) {
@@ -129,12 +135,19 @@ public class PacketEncryptor {
 
         @Override
         public void write(SMBBuffer buffer) {
-            SMBBuffer wrappedPacketPlain = new SMBBuffer();
-            // Write the whole plainText packet to the buffer
-            packet.write(wrappedPacketPlain);
+            SMBBuffer wrappedPacketPlain = bufferPool.acquire(SMBBufferPool.capacityFor(packet));
+            try {
+                // Write the whole plainText packet to the buffer
+                packet.write(wrappedPacketPlain);
+                encryptTo(buffer, wrappedPacketPlain);
+            } finally {
+                bufferPool.release(wrappedPacketPlain);
+            }
+        }
 
+        private void encryptTo(SMBBuffer buffer, SMBBuffer plainText) {
             // number of bytes available to read is equals to packet size
-            final byte[] plainText = wrappedPacketPlain.getCompactData();
+            final int plainTextLength = plainText.available();
 
             // The nonce used in the SMB2_TRANSFORM_HEADER
             final byte[] nonceField = getNewNonce();
@@ -144,7 +157,7 @@ public class PacketEncryptor {
             // 3.1.4.3 Encrypting the Message, The SMB2 TRANSFORM_HEADER,
             // excluding the ProtocolId and Signature fields,
             // as the optional authenticated data.
-            SMB2TransformHeader header = new SMB2TransformHeader(nonceField, plainText.length, packet.getHeader().getSessionId());
+            SMB2TransformHeader header = new SMB2TransformHeader(nonceField, plainTextLength, packet.getHeader().getSessionId());
             final byte[] aad = createAAD(header);
 
             // the AEC-CCM and AES-GCM both will generate cipherText with authentication tag
@@ -153,23 +166,23 @@ public class PacketEncryptor {
                 AEADBlockCipher aeadBlockCipher = securityProvider.getAEADBlockCipher(cipher.getAlgorithmName());
                 aeadBlockCipher.init(Cipher.CryptMode.ENCRYPT, encryptionKey.getEncoded(), parameterSpec);
                 aeadBlockCipher.updateAAD(aad, 0, aad.length);
-                cipherTextWithMac = aeadBlockCipher.doFinal(plainText, 0, plainText.length);
+                cipherTextWithMac = aeadBlockCipher.doFinal(plainText.array(), plainText.rpos(), plainTextLength);
             } catch (SecurityException e) {
                 logger.error("Security exception while encrypting packet << {} >>", packet.getHeader());
                 throw new SMBRuntimeException(e);
             }
 
             // the plainTextSize should equals cipherTextSize - AUTHENTICATION_TAG_LENGTH
-            if (cipherTextWithMac.length != plainText.length + 16) {
+            if (cipherTextWithMac.length != plainTextLength + 16) {
                 throw new IllegalStateException("Invalid length for cipherText after encryption.");
             }
 
             byte[] signature = new byte[16];
-            System.arraycopy(cipherTextWithMac, plainText.length, signature, 0, signature.length);
+            System.arraycopy(cipherTextWithMac, plainTextLength, signature, 0, signature.length);
             header.setSignature(signature);
 
             header.writeTo(buffer);
-            buffer.putRawBytes(cipherTextWithMac, 0, plainText.length);
+            buffer.putRawBytes(cipherTextWithMac, 0, plainTextLength);
         }
 
         @Override
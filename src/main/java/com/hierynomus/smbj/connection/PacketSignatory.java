@@ -63,9 +63,11 @@ public class PacketSignatory {
         try {
             SMBBuffer buffer = packet.getDataBuffer();
             Mac mac = getMac(secretKey, securityProvider);
-            mac.update(buffer.array(), packet.getHeader().getHeaderStartPosition(), SIGNATURE_OFFSET);
+            // In a compounded response only the first message starts at 0
+            int headerStart = packet.getHeader().getHeaderStartPosition();
+            mac.update(buffer.array(), headerStart, SIGNATURE_OFFSET);
             mac.update(EMPTY_SIGNATURE);
-            mac.update(buffer.array(), STRUCTURE_SIZE, packet.getHeader().getMessageEndPosition() - STRUCTURE_SIZE);
+            mac.update(buffer.array(), headerStart + STRUCTURE_SIZE, packet.getHeader().getMessageEndPosition() - (headerStart + STRUCTURE_SIZE));
             byte[] signature = mac.doFinal();
             byte[] receivedSignature = packet.getHeader().getSignature();
             for (int i = 0; i < SIGNATURE_SIZE; i++) {
@@ -83,6 +85,21 @@ public class PacketSignatory {
         }
     }
 
+    /**
+     * Sign a request that has already been written to the buffer, used for the requests in a compounded chain which
+     * are signed over their own bytes including the padding up to the next request.
+     */
+    void signInPlace(SMBBuffer buffer, int packetStart, int length, SecretKey secretKey) {
+        try {
+            Mac mac = getMac(secretKey, securityProvider);
+            mac.update(buffer.array(), packetStart, length);
+            byte[] signature = mac.doFinal();
+            System.arraycopy(signature, 0, buffer.array(), packetStart + SIGNATURE_OFFSET, SIGNATURE_SIZE);
+        } catch (SecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static Mac getMac(SecretKey secretKey, SecurityProvider securityProvider) throws SecurityException {
         Mac mac = securityProvider.getMac(secretKey.getAlgorithm());
         mac.init(secretKey.getEncoded());
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+/**
+ * Asks for the credits the request is charged plus enough credits to get back to
+ * {@link SequenceWindow#PREFERRED_MINIMUM_CREDITS} available credits, but never for less than twice the credits the
+ * request is charged. This is the default strategy.
+ */
+public class PreferredMinimumCreditRequestStrategy implements CreditRequestStrategy {
+
+    @Override
+    public int creditsToRequest(int creditsWanted, int creditCharge, int availableCredits) {
+        return Math.max(SequenceWindow.PREFERRED_MINIMUM_CREDITS - availableCredits - creditCharge, 2 * creditCharge);
+    }
+
+    @Override
+    public void creditsGranted(int creditCharge, int creditsGranted, boolean interim) {
+        // Does not depend on the responses
+    }
+}
@@ -19,25 +19,29 @@ import com.hierynomus.mssmb2.SMB2Packet;
 import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.protocol.commons.concurrent.CancellableFuture;
 import com.hierynomus.protocol.commons.concurrent.Promise;
+import com.hierynomus.protocol.commons.concurrent.TimerWheel;
 import com.hierynomus.smb.SMBPacket;
 import com.hierynomus.smbj.common.SMBRuntimeException;
 
 import java.util.Date;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class Request {
 
     private final Promise<SMB2Packet, SMBRuntimeException> promise;
-    private SMBPacket<?, ?> packet;
+    private volatile SMBPacket<?, ?> packet;
     private final long messageId;
-    private final UUID cancelId;
     private final Date timestamp;
     private long asyncId;
+    private volatile boolean expired;
+    private TimerWheel timer;
+    private long timeoutMillis;
+    private Runnable onExpired;
+    private TimerWheel.Timeout expiration;
 
-    public Request(SMBPacket<?, ?> packet, long messageId, UUID cancelId) {
+    public Request(SMBPacket<?, ?> packet, long messageId) {
         this.packet = packet;
         this.messageId = messageId;
-        this.cancelId = cancelId;
         timestamp = new Date();
         this.promise = new Promise<>(String.valueOf(messageId), SMBRuntimeException.Wrapper);
     }
@@ -64,8 +68,44 @@ public class Request {
 
     }
 
-    UUID getCancelId() {
-        return cancelId;
+    /**
+     * [MS-SMB2] 3.2.6.1 Request Expiration Timer, run <code>onExpired</code> if no response arrived within the timeout.
+     */
+    synchronized void expireAfter(TimerWheel timer, long timeoutMillis, Runnable onExpired) {
+        this.timer = timer;
+        this.timeoutMillis = timeoutMillis;
+        this.onExpired = onExpired;
+        this.expiration = timer.schedule(onExpired, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Restart the expiration timer of this request, e.g. because the server indicated that it handles the request
+     * asynchronously.
+     */
+    public synchronized void extendExpiration() {
+        if (expiration != null && !expired && expiration.cancel()) {
+            expiration = timer.schedule(onExpired, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void cancelExpiration() {
+        if (expiration != null) {
+            expiration.cancel();
+            expiration = null;
+        }
+    }
+
+    /**
+     * Mark this request as expired. The request packet is released, a response that still arrives is only used for
+     * its credits.
+     */
+    void markExpired() {
+        expired = true;
+        packet = null;
+    }
+
+    public boolean isExpired() {
+        return expired;
     }
 
     public Date getTimestamp() {
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free table of requests keyed by their primitive message id.
+ * <p/>
+ * Message ids are handed out densely and in increasing order, so the outstanding requests map onto a ring of slots
+ * indexed by the low bits of their message id without colliding. Only when a request stays outstanding for so long
+ * that a newer request maps onto its slot (e.g. a pending CHANGE_NOTIFY), the newer request goes into an overflow map.
+ */
+class RequestTable {
+    private static final int SLOTS = 4096; // Must be a power of 2
+    private static final int MASK = SLOTS - 1;
+
+    private final AtomicReferenceArray<Request> slots = new AtomicReferenceArray<>(SLOTS);
+    private final ConcurrentHashMap<Long, Request> overflow = new ConcurrentHashMap<>();
+
+    void put(Request request) {
+        long messageId = request.getMessageId();
+        if (!slots.compareAndSet(index(messageId), null, request)) {
+            overflow.put(messageId, request);
+        }
+    }
+
+    Request get(long messageId) {
+        Request request = slots.get(index(messageId));
+        if (request != null && request.getMessageId() == messageId) {
+            return request;
+        }
+        return overflow.isEmpty() ? null : overflow.get(messageId);
+    }
+
+    Request remove(long messageId) {
+        int index = index(messageId);
+        Request request = slots.get(index);
+        if (request != null && request.getMessageId() == messageId && slots.compareAndSet(index, request, null)) {
+            return request;
+        }
+        return overflow.isEmpty() ? null : overflow.remove(messageId);
+    }
+
+    /**
+     * Remove and return any one request from the table.
+     *
+     * @return A request, or <code>null</code> if the table is empty
+     */
+    Request removeAny() {
+        for (int i = 0; i < SLOTS; i++) {
+            Request request = slots.get(i);
+            if (request != null && slots.compareAndSet(i, request, null)) {
+                return request;
+            }
+        }
+        Iterator<Long> it = overflow.keySet().iterator();
+        while (it.hasNext()) {
+            Request request = overflow.remove(it.next());
+            if (request != null) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private static int index(long messageId) {
+        return (int) (messageId & MASK);
+    }
+}
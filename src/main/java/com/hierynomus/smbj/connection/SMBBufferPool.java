@@ -0,0 +1,123 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.messages.SMB2WriteRequest;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.smb.SMBBuffer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A small pool of {@link SMBBuffer}s that outgoing packets are serialized into. Buffers are handed out pre-sized for
+ * the packet that is about to be written, and are returned once the transport has sent their contents. This way a
+ * connection reuses a handful of buffers instead of allocating, and repeatedly growing, a new one for every packet.
+ */
+class SMBBufferPool {
+    /**
+     * Room for the SMB2 header, the fixed part of the largest request structure and an SMB2 TRANSFORM_HEADER.
+     */
+    private static final int PACKET_OVERHEAD = 256;
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    private final Deque<PooledBuffer> buffers = new ArrayDeque<>();
+
+    /**
+     * The capacity needed to serialize the packet. Only the data of a WRITE request is taken into account, for other
+     * requests {@link SMB2Packet#getMaxPayloadSize()} is the size of the expected response, not of the request itself.
+     * The few requests that carry more than {@link #PACKET_OVERHEAD} bytes (long paths, IOCTL input, SET_INFO data)
+     * grow the buffer while they are written, after which the larger buffer is pooled.
+     *
+     * @param packet The packet that will be written
+     * @return The expected size of the serialized packet
+     */
+    static int capacityFor(SMB2Packet packet) {
+        SMB2Packet request = packet.getPacket();
+        if (request instanceof CompoundedPacket) {
+            int capacity = 0;
+            for (SMB2Packet element : ((CompoundedPacket) request).getPackets()) {
+                capacity += capacityFor(element);
+            }
+            return capacity;
+        }
+        if (request instanceof SMB2WriteRequest) {
+            return request.getMaxPayloadSize() + PACKET_OVERHEAD;
+        }
+        return PACKET_OVERHEAD;
+    }
+
+    /**
+     * Take the smallest pooled buffer that can hold at least <code>capacity</code> bytes, or allocate a new one of
+     * exactly that size if none of the pooled buffers is large enough.
+     *
+     * @param capacity The number of bytes the buffer should be able to hold
+     * @return An empty buffer
+     */
+    synchronized SMBBuffer acquire(int capacity) {
+        PooledBuffer best = null;
+        for (PooledBuffer buffer : buffers) {
+            if (buffer.array().length >= capacity && (best == null || buffer.array().length < best.array().length)) {
+                best = buffer;
+            }
+        }
+        if (best == null) {
+            return new PooledBuffer(capacity);
+        }
+        buffers.remove(best);
+        best.pooled = false;
+        best.clear();
+        return best;
+    }
+
+    /**
+     * Hand a buffer obtained from {@link #acquire(int)} back to the pool, it must not be used afterwards. Buffers that
+     * were not handed out by this pool are ignored. If the pool is full, the smallest buffer is dropped.
+     *
+     * @param buffer The buffer to return
+     */
+    synchronized void release(Buffer<?> buffer) {
+        if (!(buffer instanceof PooledBuffer) || ((PooledBuffer) buffer).pooled) {
+            return;
+        }
+        PooledBuffer released = (PooledBuffer) buffer;
+        if (buffers.size() >= MAX_POOLED_BUFFERS) {
+            PooledBuffer smallest = released;
+            for (PooledBuffer b : buffers) {
+                if (b.array().length < smallest.array().length) {
+                    smallest = b;
+                }
+            }
+            if (smallest == released) {
+                return;
+            }
+            buffers.remove(smallest);
+        }
+        released.pooled = true;
+        buffers.push(released);
+    }
+
+    private static class PooledBuffer extends SMBBuffer {
+        private boolean pooled;
+
+        PooledBuffer(int capacity) {
+            // Not using the sized constructor, as that rounds up to the next power of 2
+            super(new byte[capacity]);
+            clear();
+        }
+    }
+}
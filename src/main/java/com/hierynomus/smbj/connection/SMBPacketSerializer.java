@@ -15,16 +15,50 @@
  */
 package com.hierynomus.smbj.connection;
 
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.transport.PacketSerializer;
 import com.hierynomus.smb.SMBBuffer;
 import com.hierynomus.smb.SMBPacket;
 
 public class SMBPacketSerializer implements PacketSerializer<SMBPacket<?, ?>, SMBBuffer> {
-    
+    private final SMBBufferPool bufferPool;
+
+    public SMBPacketSerializer() {
+        this(new SMBBufferPool());
+    }
+
+    SMBPacketSerializer(SMBBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
     @Override
     public SMBBuffer write(SMBPacket<?, ?> packet) {
-        SMBBuffer b = new SMBBuffer();
+        SMBBuffer b;
+        if (isPoolable(packet)) {
+            b = bufferPool.acquire(SMBBufferPool.capacityFor((SMB2Packet) packet));
+        } else {
+            b = new SMBBuffer();
+        }
         packet.write(b);
         return b;
     }
+
+    @Override
+    public void release(Buffer<?> buffer) {
+        bufferPool.release(buffer);
+    }
+
+    /**
+     * The NEGOTIATE and SESSION_SETUP requests keep referring to their buffer after they have been sent, as their
+     * bytes are hashed into the preauth integrity hash value. These (and SMB1 packets) always get a buffer of their own.
+     */
+    private static boolean isPoolable(SMBPacket<?, ?> packet) {
+        if (!(packet instanceof SMB2Packet)) {
+            return false;
+        }
+        SMB2MessageCommandCode message = ((SMB2Packet) packet).getHeader().getMessage();
+        return message != SMB2MessageCommandCode.SMB2_NEGOTIATE && message != SMB2MessageCommandCode.SMB2_SESSION_SETUP;
+    }
 }
@@ -40,7 +40,6 @@ import org.slf4j.LoggerFactory;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -200,7 +199,7 @@ class SMBProtocolNegotiator {
         if (l != 0) {
             throw new IllegalStateException("The SMBv1 SMB_COM_NEGOTIATE packet needs to be the first packet sent.");
         }
-        Request request = new Request(negotiatePacket, l, UUID.randomUUID());
+        Request request = new Request(negotiatePacket, l);
         connection.outstandingRequests.registerOutstanding(request);
         this.negotiationContext.negotiationRequest = negotiatePacket;
         connection.transport.write(negotiatePacket);
@@ -17,9 +17,14 @@ package com.hierynomus.smbj.connection;
 
 import com.hierynomus.smbj.common.SMBRuntimeException;
 
-import java.util.concurrent.Semaphore;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * [MS-SMB2] 3.2.4.1.6 Algorithm for Handling Available Message Sequence Numbers by the Client.
@@ -35,86 +40,235 @@ import java.util.concurrent.atomic.AtomicLong;
  * <li>The client MUST use the lowest available sequence number in its allowable set for each request.</li>
  * <li>For a multi-credit request as specified in section 3.2.4.1.5, the client MUST use the lowest available range of consecutive sequence numbers.</li>
  * </ul>
+ * <p/>
+ * Credits are taken with a compare-and-set on the available count, so requests do not contend on a lock as long as
+ * credits are available. A request that finds no credits (or finds others already waiting) joins a FIFO queue, which is
+ * served in order whenever the server grants new credits. This prevents a stream of small requests from starving a
+ * waiting multi-credit request, and the other way around. A request that needs an exact number of credits (e.g. a
+ * compound chain) and cannot be served yet lets up to {@value #MAX_BYPASSES} later requests that can be served go ahead
+ * of it, after which the queue is strictly served in order again until it gets its credits.
  */
 public class SequenceWindow {
     static final int PREFERRED_MINIMUM_CREDITS = 512;
-    private AtomicLong lowestAvailable = new AtomicLong(0);
-    private Semaphore available = new Semaphore(1);
-    private static final long MAX_WAIT = 5000;
+    static final long DEFAULT_MAX_WAIT = 5000;
+    static final int MAX_BYPASSES = 32;
+
+    private final AtomicLong lowestAvailable = new AtomicLong(0);
+    private final AtomicInteger available = new AtomicInteger(1);
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    // Only taken to hand out credits to the waiters, never on the fast path
+    private final ReentrantLock waitersLock = new ReentrantLock();
+    private final long maxWait;
+    private volatile boolean creditsDisabled = false;
+
+    public SequenceWindow() {
+        this(DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param maxWait The maximum number of milliseconds to wait for credits, 0 fails immediately if no credits are available.
+     */
+    public SequenceWindow(long maxWait) {
+        this.maxWait = maxWait;
+    }
 
     long get() {
         return get(1)[0];
     }
 
+    /**
+     * Take exactly <code>credits</code> sequence numbers.
+     */
     long[] get(int credits) {
+        return acquire(credits, true);
+    }
+
+    /**
+     * Take up to <code>creditsWanted</code> sequence numbers. When fewer credits are available, the request gets all but
+     * one of them, so that a simple request can still be sent, and at least a single credit.
+     *
+     * @param creditsWanted The number of credits the request would like to have
+     * @return The consecutive sequence numbers assigned to the request, which is at least 1 and at most <code>creditsWanted</code>
+     */
+    long[] getUpTo(int creditsWanted) {
+        return acquire(creditsWanted, false);
+    }
+
+    private long[] acquire(int credits, boolean exact) {
+        if (creditsDisabled) {
+            return range(lowestAvailable.getAndAdd(credits), credits);
+        }
+        if (waiters.isEmpty()) {
+            int granted = tryTake(credits, exact);
+            if (granted > 0) {
+                return range(lowestAvailable.getAndAdd(granted), granted);
+            }
+        }
+        if (maxWait == 0) {
+            throw notEnoughCredits(credits);
+        }
+        return await(new Waiter(credits, exact));
+    }
+
+    private long[] await(Waiter waiter) {
+        waiters.add(waiter);
+        serveWaiters();
         try {
-            if (available.tryAcquire(credits, MAX_WAIT, TimeUnit.MILLISECONDS)) {
-                long lowest = lowestAvailable.getAndAdd(credits);
-                return range(lowest, lowest + credits);
+            if (waiter.granted.await(maxWait, TimeUnit.MILLISECONDS)) {
+                return waiter.sequenceNumbers;
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new SMBRuntimeException("Got interrupted waiting for " + credits + " to be available. Credits available at this moment: " + available.availablePermits());
+            if (!abandon(waiter)) {
+                return waiter.sequenceNumbers;
+            }
+            throw new SMBRuntimeException("Got interrupted waiting for " + waiter.credits + " to be available. Credits available at this moment: " + available());
         }
-        throw new SMBRuntimeException("Not enough credits (" + available.availablePermits() + " available) to hand out " + credits + " sequence numbers");
+        if (!abandon(waiter)) {
+            return waiter.sequenceNumbers;
+        }
+        throw notEnoughCredits(waiter.credits);
     }
 
-    void disableCredits() {
-        this.available = new NoopSemaphore();
+    /**
+     * Remove a waiter that gave up waiting from the queue.
+     *
+     * @return <code>false</code> if the waiter got its credits in the meantime
+     */
+    private boolean abandon(Waiter waiter) {
+        waitersLock.lock();
+        try {
+            if (waiter.sequenceNumbers != null) {
+                return false;
+            }
+            waiters.remove(waiter);
+        } finally {
+            waitersLock.unlock();
+        }
+        // The next waiter might be satisfied by the credits this one was waiting for.
+        serveWaiters();
+        return true;
     }
 
-    public int available() {
-        return available.availablePermits();
+    /**
+     * Hand out credits to the waiters in the order in which they started waiting, stopping at the first waiter that
+     * cannot be served. If that waiter needs an exact number of credits, the waiters behind it that can be served are
+     * served, as long as it has not been bypassed {@value #MAX_BYPASSES} times.
+     */
+    private void serveWaiters() {
+        waitersLock.lock();
+        try {
+            Waiter head;
+            while ((head = waiters.peek()) != null) {
+                int granted = tryTake(head.credits, head.exact);
+                if (granted == 0) {
+                    if (head.exact) {
+                        serveBehind(head);
+                    }
+                    return;
+                }
+                waiters.poll();
+                head.grant(range(lowestAvailable.getAndAdd(granted), granted));
+            }
+        } finally {
+            waitersLock.unlock();
+        }
     }
 
-    public void creditsGranted(int credits) {
-        available.release(credits);
+    /**
+     * Let the waiters behind a blocked <code>head</code> that can be served go ahead of it. Must hold the waitersLock.
+     */
+    private void serveBehind(Waiter head) {
+        Iterator<Waiter> it = waiters.iterator();
+        while (head.bypassed < MAX_BYPASSES && it.hasNext()) {
+            Waiter waiter = it.next();
+            if (waiter == head) {
+                continue;
+            }
+            int granted = tryTake(waiter.credits, waiter.exact);
+            if (granted == 0) {
+                if (available.get() == 0) {
+                    return;
+                }
+                continue;
+            }
+            it.remove();
+            head.bypassed++;
+            waiter.grant(range(lowestAvailable.getAndAdd(granted), granted));
+        }
     }
 
-    private long[] range(long start, long stop) {
-        int l = (int) (stop - start);
-        long[] result = new long[l];
+    /**
+     * Atomically take credits from the available credits.
+     *
+     * @return The number of credits taken, 0 if the request cannot be satisfied right now
+     */
+    private int tryTake(int credits, boolean exact) {
+        while (true) {
+            int current = available.get();
+            int granted;
+            if (exact || credits < current) {
+                granted = credits <= current ? credits : 0;
+            } else if (credits > 1 && current > 1) {
+                granted = current - 1; // Keep 1 credit left for a simple request
+            } else {
+                granted = current > 0 ? 1 : 0;
+            }
+            if (granted == 0) {
+                return 0;
+            }
+            if (available.compareAndSet(current, current - granted)) {
+                return granted;
+            }
+        }
+    }
 
-        for (int i = 0; i < l; i++)
-            result[i] = start + i;
+    private SMBRuntimeException notEnoughCredits(int credits) {
+        return new SMBRuntimeException("Not enough credits (" + available() + " available) to hand out " + credits + " sequence numbers");
+    }
 
-        return result;
+    void disableCredits() {
+        this.creditsDisabled = true;
     }
 
-    @SuppressWarnings("serial")
-    private static class NoopSemaphore extends Semaphore {
-        public NoopSemaphore() {
-            super(1);
-        }
+    public int available() {
+        return creditsDisabled ? Integer.MAX_VALUE : available.get();
+    }
 
-        @Override
-        public boolean tryAcquire() {
-            return true;
+    public void creditsGranted(int credits) {
+        if (creditsDisabled) {
+            return;
         }
-
-        @Override
-        public boolean tryAcquire(long timeout, TimeUnit unit) {
-            return true;
+        available.addAndGet(credits);
+        if (!waiters.isEmpty()) {
+            serveWaiters();
         }
+    }
 
-        @Override
-        public boolean tryAcquire(int permits) {
-            return true;
-        }
+    private long[] range(long start, int length) {
+        long[] result = new long[length];
 
-        @Override
-        public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
-            return true;
-        }
+        for (int i = 0; i < length; i++)
+            result[i] = start + i;
+
+        return result;
+    }
+
+    private static class Waiter {
+        private final int credits;
+        private final boolean exact;
+        private final CountDownLatch granted = new CountDownLatch(1);
+        private volatile long[] sequenceNumbers;
+        private int bypassed; // guarded by waitersLock
 
-        @Override
-        public void release(int permits) {
-            // no-op
+        private Waiter(int credits, boolean exact) {
+            this.credits = credits;
+            this.exact = exact;
         }
 
-        @Override
-        public int availablePermits() {
-            return Integer.MAX_VALUE;
+        private void grant(long[] sequenceNumbers) {
+            this.sequenceNumbers = sequenceNumbers;
+            granted.countDown();
         }
     }
 }
@@ -45,13 +45,19 @@ public class SMB2AsyncResponsePacketHandler extends SMB2PacketHandler {
     @Override
     protected void doSMB2Handle(SMB2PacketData packetData) throws TransportException {
         Request request = outstandingRequests.getRequestByMessageId(packetData.getHeader().getMessageId());
+        if (request == null) {
+            // An interim response overtaken by the final one, or the late response to an expired request, which
+            // only returned its credits
+            logger.debug("Request for {} is no longer outstanding, discarding response", packetData);
+            return;
+        }
         logger.trace("Send/Recv of packet {} took << {} ms >>", packetData, System.currentTimeMillis() - request.getTimestamp().getTime());
 
         // [MS-SMB2] 3.2.5.1.5 Handling Asynchronous Responses
         if (packetData.isIntermediateAsyncResponse()) {
             logger.debug("Received ASYNC packet {} with AsyncId << {} >>", packetData, packetData.getHeader().getAsyncId());
             request.setAsyncId(packetData.getHeader().getAsyncId());
-            // TODO expiration timer
+            request.extendExpiration();
             return;
         }
 
@@ -17,6 +17,8 @@ package com.hierynomus.smbj.connection.packet;
 
 import com.hierynomus.mssmb2.SMB2PacketData;
 import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.connection.CreditRequestStrategy;
+import com.hierynomus.smbj.connection.PreferredMinimumCreditRequestStrategy;
 import com.hierynomus.smbj.connection.SequenceWindow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,14 +34,21 @@ import org.slf4j.LoggerFactory;
 public class SMB2CreditGrantingPacketHandler extends SMB2PacketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SMB2CreditGrantingPacketHandler.class);
     private SequenceWindow sequenceWindow;
+    private CreditRequestStrategy creditRequestStrategy;
 
     public SMB2CreditGrantingPacketHandler(SequenceWindow sequenceWindow) {
+        this(sequenceWindow, new PreferredMinimumCreditRequestStrategy());
+    }
+
+    public SMB2CreditGrantingPacketHandler(SequenceWindow sequenceWindow, CreditRequestStrategy creditRequestStrategy) {
         this.sequenceWindow = sequenceWindow;
+        this.creditRequestStrategy = creditRequestStrategy;
     }
 
     @Override
     protected void doSMB2Handle(SMB2PacketData packetData) throws TransportException {
         sequenceWindow.creditsGranted(packetData.getHeader().getCreditResponse());
+        creditRequestStrategy.creditsGranted(packetData.getHeader().getCreditCharge(), packetData.getHeader().getCreditResponse(), packetData.isIntermediateAsyncResponse());
         logger.debug("Server granted us {} credits for {}, now available: {} credits", packetData.getHeader().getCreditResponse(), packetData, sequenceWindow.available());
         next.handle(packetData);
     }
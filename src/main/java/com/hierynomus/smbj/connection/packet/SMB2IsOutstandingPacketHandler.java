@@ -15,7 +15,6 @@
  */
 package com.hierynomus.smbj.connection.packet;
 
-import com.hierynomus.mssmb2.DeadLetterPacketData;
 import com.hierynomus.mssmb2.SMB2PacketData;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.smbj.connection.OutstandingRequests;
@@ -34,6 +33,10 @@ import org.slf4j.LoggerFactory;
  * <p>
  * If the command field in the SMB2 header is SMB2 OPLOCK_BREAK, it MUST be processed as specified in 3.2.5.19.
  * Otherwise, the response MUST be discarded as invalid.
+ * <p>
+ * Deviation: a response for a request that is not outstanding (anymore) still has its credits granted before it is
+ * discarded, as it can be the late response to a request that expired, or an interim response that was overtaken by
+ * the final one. Otherwise the credits it carries would be lost for good.
  */
 public class SMB2IsOutstandingPacketHandler extends SMB2PacketHandler {
     private static final Logger logger = LoggerFactory.getLogger(SMB2IsOutstandingPacketHandler.class);
@@ -47,12 +50,15 @@ public class SMB2IsOutstandingPacketHandler extends SMB2PacketHandler {
     protected void doSMB2Handle(SMB2PacketData packetData) throws TransportException {
         long messageId = packetData.getSequenceNumber();
 
-        if (!outstandingRequests.isOutstanding(messageId) && !packetData.isOplockBreakNotification()) {
-            logger.error("Received response with unknown sequence number << {} >>", messageId);
-            next.handle(new DeadLetterPacketData(packetData.getHeader()));
-        } else {
-            next.handle(packetData);
+        if (!outstandingRequests.isOutstanding(messageId) && packetData.isIntermediateAsyncResponse()) {
+            // The final response overtook this one, which can happen when responses are processed concurrently
+            logger.debug("Interim response for completed request << {} >>", messageId);
+        } else if (!outstandingRequests.isOutstanding(messageId) && !packetData.isOplockBreakNotification()) {
+            // E.g. the late response to a request that expired and was written off
+            logger.warn("Received response with unknown sequence number << {} >>", messageId);
         }
+        // A response without request continues to the credit granting, after which it is discarded
+        next.handle(packetData);
 
     }
 }
@@ -20,6 +20,7 @@ import com.hierynomus.mssmb2.SMB2Packet;
 import com.hierynomus.mssmb2.SMB2PacketData;
 import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smb.SMBPacket;
 import com.hierynomus.smbj.connection.OutstandingRequests;
 import com.hierynomus.smbj.connection.Request;
 import org.slf4j.Logger;
@@ -53,10 +54,17 @@ public class SMB2ProcessResponsePacketHandler extends SMB2PacketHandler {
     @Override
     protected void doSMB2Handle(SMB2PacketData packetData) throws TransportException {
         Request request = outstandingRequests.getRequestByMessageId(packetData.getHeader().getMessageId());
+        SMBPacket<?, ?> requestPacket = request.getPacket();
+        if (request.isExpired() || requestPacket == null) {
+            // The request already failed with a timeout, the response only returned its credits
+            logger.debug("Discarding late response {} for expired request", packetData);
+            outstandingRequests.receivedResponseFor(packetData.getHeader().getMessageId());
+            return;
+        }
 
         SMB2Packet packet = null;
         try {
-            packet = smb2Converter.readPacket(request.getPacket(), packetData);
+            packet = smb2Converter.readPacket(requestPacket, packetData);
         } catch (Buffer.BufferException e) {
             logger.error("Failed to deserialize SMB2 Packet Data of {}", packetData);
 
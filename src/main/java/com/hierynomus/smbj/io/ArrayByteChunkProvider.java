@@ -44,11 +44,16 @@ public class ArrayByteChunkProvider extends ByteChunkProvider {
 
     @Override
     protected int getChunk(byte[] chunk) {
-        int write = chunk.length;
+        return getChunk(chunk, 0, chunk.length);
+    }
+
+    @Override
+    protected int getChunk(byte[] dest, int destOffset, int length) {
+        int write = length;
         if (write > remaining) {
             write = remaining;
         }
-        System.arraycopy(data, bufferOffset, chunk, 0, write);
+        System.arraycopy(data, bufferOffset, dest, destOffset, write);
         bufferOffset += write;
         remaining -= write;
 
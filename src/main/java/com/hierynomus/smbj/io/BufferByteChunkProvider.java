@@ -38,13 +38,18 @@ public class BufferByteChunkProvider extends ByteChunkProvider {
 
     @Override
     protected int getChunk(byte[] chunk) throws IOException {
-        int toRead = chunk.length;
-        if (buffer.available() < chunk.length) {
+        return getChunk(chunk, 0, chunk.length);
+    }
+
+    @Override
+    protected int getChunk(byte[] dest, int destOffset, int length) throws IOException {
+        int toRead = length;
+        if (buffer.available() < length) {
             toRead = buffer.available();
         }
 
         try {
-            buffer.readRawBytes(chunk, 0, toRead);
+            buffer.readRawBytes(dest, destOffset, toRead);
         } catch (Buffer.BufferException e) {
             throw new IOException(e);
         }
@@ -33,13 +33,13 @@ public class ByteBufferByteChunkProvider extends CachingByteChunkProvider {
     }
 
     @Override
-    int prepareChunk(byte[] chunk, int bytesNeeded) throws IOException {
-        int bytesToRead = Math.min(chunk.length, Math.min(bytesNeeded, buffer.remaining()));
+    int prepareChunk(byte[] dest, int destOffset, int bytesNeeded) throws IOException {
+        int bytesToRead = Math.min(bytesNeeded, buffer.remaining());
         if (bytesToRead == 0) {
             return -1;
         }
 
-        buffer.get(chunk, 0, bytesToRead);
+        buffer.get(dest, destOffset, bytesToRead);
         return bytesToRead;
     }
 
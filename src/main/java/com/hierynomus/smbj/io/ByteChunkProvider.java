@@ -29,15 +29,16 @@ public abstract class ByteChunkProvider implements Closeable {
     protected int chunkSize = CHUNK_SIZE;
 
     private int lastWriteSize;
+    private byte[] scratch;
 
     public abstract boolean isAvailable();
     public abstract void prepareWrite(int maxBytesToPrepare);
 
     public void writeChunk(OutputStream os) {
         lastWriteSize = 0;
-        byte[] chunk = new byte[chunkSize];
+        byte[] chunk = getScratch(chunkSize);
         try {
-            int size = getChunk(chunk);
+            int size = getChunk(chunk, 0, chunkSize);
             os.write(chunk, 0, size);
             offset += size;
             lastWriteSize += size;
@@ -48,25 +49,26 @@ public abstract class ByteChunkProvider implements Closeable {
 
     public void writeChunks(Buffer<?> buffer, int nrChunks) {
         lastWriteSize = 0;
-        byte[] chunk = new byte[chunkSize];
         for (int i = 0; i < nrChunks; i++) {
-            try {
-                int size = getChunk(chunk);
-                buffer.putRawBytes(chunk, 0, size);
-                offset += size;
-                lastWriteSize += size;
-            } catch (IOException e) {
-                throw new SMBRuntimeException(e);
-            }
+            writeChunkInto(buffer);
         }
     }
 
     public void writeChunk(Buffer<?> buffer) {
         lastWriteSize = 0;
-        byte[] chunk = new byte[chunkSize];
+        writeChunkInto(buffer);
+    }
+
+    /**
+     * Copy the next chunk straight into the backing array of the buffer, so no intermediate array is needed.
+     */
+    private void writeChunkInto(Buffer<?> buffer) {
         try {
-            int size = getChunk(chunk);
-            buffer.putRawBytes(chunk, 0, size);
+            int length = Math.min(chunkSize, bytesLeft());
+            buffer.ensureCapacity(length);
+            int wpos = buffer.wpos();
+            int size = getChunk(buffer.array(), wpos, length);
+            buffer.wpos(wpos + size);
             offset += size;
             lastWriteSize += size;
         } catch (IOException e) {
@@ -88,6 +90,31 @@ public abstract class ByteChunkProvider implements Closeable {
 
     protected abstract int getChunk(byte[] chunk) throws IOException;
 
+    /**
+     * Copy at most <code>length</code> bytes of the next chunk into <code>dest</code>, starting at
+     * <code>destOffset</code>.
+     * <p>
+     * The default implementation reads the chunk through {@link #getChunk(byte[])} into a scratch array that is reused
+     * for the lifetime of this provider. Providers that can copy directly into the destination should override it.
+     *
+     * @return the number of bytes copied
+     */
+    protected int getChunk(byte[] dest, int destOffset, int length) throws IOException {
+        byte[] chunk = getScratch(length);
+        int size = getChunk(chunk);
+        if (chunk != dest || destOffset != 0) {
+            System.arraycopy(chunk, 0, dest, destOffset, size);
+        }
+        return size;
+    }
+
+    private byte[] getScratch(int length) {
+        if (scratch == null || scratch.length != length) {
+            scratch = new byte[length];
+        }
+        return scratch;
+    }
+
     public abstract int bytesLeft();
 
     @Override
@@ -36,22 +36,24 @@ abstract class CachingByteChunkProvider extends ByteChunkProvider {
             return;
         }
 
-        byte[] chunk = new byte[1024];
-
         // Before each prepareWrite, compact the buffer to minimize size growth
         buffer.compact();
 
         int bytesNeeded = maxBytesToPrepare - buffer.available();
         int read;
         try {
+            if (bytesNeeded > 0) {
+                buffer.ensureCapacity(bytesNeeded);
+            }
             while (bytesNeeded > 0) {
-                read = prepareChunk(chunk, bytesNeeded);
+                // Read the data straight into the buffer
+                int wpos = buffer.wpos();
+                read = prepareChunk(buffer.array(), wpos, bytesNeeded);
                 if (read == -1) {
                     break;
                 }
 
-                // Write the data to the buffer
-                buffer.putRawBytes(chunk, 0, read);
+                buffer.wpos(wpos + read);
                 bytesNeeded -= read;
             }
         } catch (IOException e) {
@@ -59,13 +61,23 @@ abstract class CachingByteChunkProvider extends ByteChunkProvider {
         }
     }
 
-    abstract int prepareChunk(byte[] chunk, int bytesNeeded) throws IOException;
+    /**
+     * Read at most <code>bytesNeeded</code> bytes into <code>dest</code>, starting at <code>destOffset</code>.
+     *
+     * @return the number of bytes read, or -1 if no more data is available
+     */
+    abstract int prepareChunk(byte[] dest, int destOffset, int bytesNeeded) throws IOException;
 
     @Override
     protected int getChunk(byte[] chunk) throws IOException {
         return cachingProvider.getChunk(chunk);
     }
 
+    @Override
+    protected int getChunk(byte[] dest, int destOffset, int length) throws IOException {
+        return cachingProvider.getChunk(dest, destOffset, length);
+    }
+
     @Override
     public int bytesLeft() {
         return cachingProvider.bytesLeft();
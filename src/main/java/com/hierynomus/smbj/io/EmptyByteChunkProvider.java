@@ -35,6 +35,11 @@ public class EmptyByteChunkProvider extends ByteChunkProvider {
         return 0;
     }
 
+    @Override
+    protected int getChunk(byte[] dest, int destOffset, int length) {
+        return 0;
+    }
+
     @Override
     public int bytesLeft() {
         return 0;
@@ -57,6 +57,11 @@ public class FileByteChunkProvider extends ByteChunkProvider {
         return underlyingProvider.getChunk(chunk);
     }
 
+    @Override
+    protected int getChunk(byte[] dest, int destOffset, int length) throws IOException {
+        return underlyingProvider.getChunk(dest, destOffset, length);
+    }
+
     @Override
     public int bytesLeft() {
         return underlyingProvider.bytesLeft();
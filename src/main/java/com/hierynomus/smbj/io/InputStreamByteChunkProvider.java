@@ -38,13 +38,12 @@ public class InputStreamByteChunkProvider extends CachingByteChunkProvider {
     }
 
     @Override
-    int prepareChunk(byte[] chunk, int bytesNeeded) throws IOException {
-        int toRead = Math.min(bytesNeeded, chunk.length);
-        if (toRead == 0) {
+    int prepareChunk(byte[] dest, int destOffset, int bytesNeeded) throws IOException {
+        if (bytesNeeded == 0) {
             return -1;
         }
 
-        return is.read(chunk, 0, toRead);
+        return is.read(dest, destOffset, bytesNeeded);
     }
 
     @Override
@@ -21,6 +21,7 @@ import com.hierynomus.mssmb2.messages.SMB2CreateRequest;
 import com.hierynomus.mssmb2.messages.SMB2Logoff;
 import com.hierynomus.mssmb2.messages.SMB2TreeConnectRequest;
 import com.hierynomus.mssmb2.messages.SMB2TreeConnectResponse;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.protocol.commons.concurrent.Futures;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.smbj.SmbConfig;
@@ -44,6 +45,7 @@ import org.slf4j.LoggerFactory;
 import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -291,7 +293,7 @@ public class Session implements AutoCloseable {
      * @return a Future to be used to retrieve the response packet
      * @throws TransportException
      */
-    public <T extends SMB2Packet> Future<T> send(SMB2Packet packet) throws TransportException {
+    public <T extends SMB2Packet> AFuture<T> send(SMB2Packet packet) throws TransportException {
 
         // custom changed from: https://github.com/hierynomus/smbj/pull/824
 
@@ -326,6 +328,31 @@ public class Session implements AutoCloseable {
         return connection.send(signatory.sign(packet, signingKey));
     }
 
+    /**
+     * Send a chain of requests in a single transport frame. Like {@link #send(SMB2Packet)}, the chain is encrypted or
+     * every request in it is signed depending on the session's flags.
+     *
+     * @param packets the requests to send, in the order the server should process them
+     * @return a future for the response to every request, in the order of the requests
+     * @throws TransportException
+     */
+    public List<AFuture<SMB2Packet>> sendCompounded(List<SMB2Packet> packets) throws TransportException {
+        if (shouldEncryptData()) {
+            return connection.sendCompounded(packets, null, sessionContext.getEncryptionKey());
+        }
+
+        SMB2Dialect dialect = connection.getNegotiatedProtocol().getDialect();
+        if (isSmb2(dialect) && (!connection.getConnectionContext().isServerRequiresSigning() && !sessionContext.isSigningRequired())) {
+            return connection.sendCompounded(packets, null, null);
+        }
+
+        SecretKey signingKey = getSigningKey(packets.get(0).getHeader(), true);
+        if (sessionContext.isSigningRequired() && signingKey == null) {
+            throw new TransportException("Message signing is required, but no signing key is negotiated");
+        }
+        return connection.sendCompounded(packets, signingKey, null);
+    }
+
     private boolean isSmb2(SMB2Dialect dialect) {
         if (dialect == SMB2Dialect.SMB_2_0_2 || dialect == SMB2Dialect.SMB_2_1 || dialect == SMB2Dialect.SMB_2XX)
             return true;
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.msdtyp.SecurityInformation;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.msfscc.FileInformationClass;
+import com.hierynomus.msfscc.FileSystemInformationClass;
+import com.hierynomus.mssmb2.*;
+import com.hierynomus.mssmb2.messages.*;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
+import com.hierynomus.protocol.commons.concurrent.SettableFuture;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+import com.hierynomus.smbj.common.SmbPath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A chain of requests on a share that is sent to the server in a single transport frame, so that a sequence like
+ * CREATE, QUERY_INFO, CLOSE only costs a single round trip [MS-SMB2] 3.2.4.1.4.
+ * <p>
+ * Requests that use {@link #RELATED_FILE_ID} operate on the file that was opened by the previous CREATE in the chain.
+ * Every added request gets its own future, which completes when the server's response to that request arrives, or
+ * fails with an {@link com.hierynomus.mssmb2.SMBApiException} if the server rejected it. Nothing is sent until
+ * {@link #send()} is called.
+ */
+public class CompoundRequest {
+    /**
+     * The file id to use for a request that operates on the file opened earlier in the same chain.
+     */
+    public static final SMB2FileId RELATED_FILE_ID = new SMB2FileId(
+            new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                         (byte) 0xFF },
+            new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                         (byte) 0xFF });
+
+    private final Share share;
+    private final SMB2Dialect dialect;
+    private final long sessionId;
+    private final long treeId;
+    private final int readBufferSize;
+    private final List<Element<?>> elements = new ArrayList<>();
+    private boolean sent;
+
+    CompoundRequest(Share share, SMB2Dialect dialect, long sessionId, long treeId, int readBufferSize) {
+        this.share = share;
+        this.dialect = dialect;
+        this.sessionId = sessionId;
+        this.treeId = treeId;
+        this.readBufferSize = readBufferSize;
+    }
+
+    public AFuture<SMB2CreateResponse> create(String path, SMB2ImpersonationLevel impersonationLevel,
+            Set<AccessMask> accessMask, Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess,
+            SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        return create(new SmbPath(share.getSmbPath(), path), impersonationLevel, accessMask, fileAttributes,
+                shareAccess, createDisposition, createOptions);
+    }
+
+    AFuture<SMB2CreateResponse> create(SmbPath smbPath, SMB2ImpersonationLevel impersonationLevel,
+            Set<AccessMask> accessMask, Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess,
+            SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        SMB2CreateRequest cr = new SMB2CreateRequest(dialect, sessionId, treeId, impersonationLevel, accessMask,
+                fileAttributes, shareAccess, createDisposition, createOptions, smbPath);
+        return add(cr, "Create", smbPath, share.getCreateStatusHandler());
+    }
+
+    public AFuture<SMB2QueryInfoResponse> queryInfo(SMB2FileId fileId,
+            SMB2QueryInfoRequest.SMB2QueryInfoType infoType, Set<SecurityInformation> securityInfo,
+            FileInformationClass fileInformationClass, FileSystemInformationClass fileSystemInformationClass) {
+        SMB2QueryInfoRequest qreq = new SMB2QueryInfoRequest(dialect, sessionId, treeId, fileId, infoType,
+                fileInformationClass, fileSystemInformationClass, null, securityInfo,
+                share.getMaxQueryInfoOutputLength(infoType, fileInformationClass));
+        return add(qreq, "QueryInfo", fileId, StatusHandler.SUCCESS);
+    }
+
+    public AFuture<SMB2SetInfoResponse> setInfo(SMB2FileId fileId, SMB2SetInfoRequest.SMB2InfoType infoType,
+            Set<SecurityInformation> securityInfo, FileInformationClass fileInformationClass, byte[] buffer) {
+        SMB2SetInfoRequest sreq = new SMB2SetInfoRequest(dialect, sessionId, treeId, infoType, fileId,
+                fileInformationClass, securityInfo, buffer);
+        return add(sreq, "SetInfo", fileId, StatusHandler.SUCCESS);
+    }
+
+    public AFuture<SMB2ReadResponse> read(SMB2FileId fileId, long offset, int length) {
+        SMB2ReadRequest rreq = new SMB2ReadRequest(dialect, fileId, sessionId, treeId, offset,
+                Math.min(length, readBufferSize));
+        return add(rreq, "Read", fileId, Share.SUCCESS_OR_EOF);
+    }
+
+    public AFuture<SMB2Close> close(SMB2FileId fileId) {
+        SMB2Close closeReq = new SMB2Close(dialect, sessionId, treeId, fileId);
+        return add(closeReq, "Close", fileId, Share.SUCCESS_OR_CLOSED);
+    }
+
+    /**
+     * Add a request to the chain. The request is marked as a related operation when it uses {@link #RELATED_FILE_ID}.
+     */
+    <T extends SMB2Packet> AFuture<T> add(SMB2Packet request, String name, Object target, StatusHandler statusHandler) {
+        if (sent) {
+            throw new IllegalStateException("The compound request has already been sent");
+        }
+        if (target == RELATED_FILE_ID) {
+            if (elements.isEmpty()) {
+                throw new IllegalArgumentException("The first request of a compound request cannot be a related operation");
+            }
+            request.getHeader().setFlag(SMB2MessageFlag.SMB2_FLAGS_RELATED_OPERATIONS);
+        }
+        Element<T> element = new Element<>(request, name, target, statusHandler);
+        elements.add(element);
+        return element.future;
+    }
+
+    /**
+     * Send all requests in a single transport frame. Errors while sending are reported through the futures of the
+     * individual requests.
+     */
+    public void send() {
+        if (sent) {
+            throw new IllegalStateException("The compound request has already been sent");
+        }
+        if (elements.isEmpty()) {
+            throw new IllegalStateException("The compound request does not contain any requests");
+        }
+        sent = true;
+
+        List<SMB2Packet> packets = new ArrayList<>(elements.size());
+        for (Element<?> element : elements) {
+            packets.add(element.request);
+        }
+        List<AFuture<SMB2Packet>> responses;
+        try {
+            if (!share.isConnected()) {
+                throw new SMBRuntimeException(share.getClass().getSimpleName() + " has already been closed");
+            }
+            responses = share.session.sendCompounded(packets);
+        } catch (TransportException | SMBRuntimeException e) {
+            for (Element<?> element : elements) {
+                element.future.setException(e);
+            }
+            return;
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            elements.get(i).complete(responses.get(i));
+        }
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    private static class Element<T extends SMB2Packet> {
+        private final SMB2Packet request;
+        private final String name;
+        private final Object target;
+        private final StatusHandler statusHandler;
+        private final SettableFuture<T> future = new SettableFuture<>();
+
+        private Element(SMB2Packet request, String name, Object target, StatusHandler statusHandler) {
+            this.request = request;
+            this.name = name;
+            this.target = target;
+            this.statusHandler = statusHandler;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(AFuture<SMB2Packet> response) {
+            Share.verifyStatus((AFuture<T>) (AFuture<?>) response, name, target, statusHandler).onComplete(future.completer());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mssmb2.SMB2Packet;
+
+/**
+ * Bounds the number of requests that a pipelined operation keeps in flight. The first request is always allowed, so
+ * that the operation makes progress, more requests are only allowed up to the limit and while the connection has more
+ * credits available than one request costs.
+ */
+class CreditWindow {
+    private final Share share;
+    private final int maxInFlight;
+    private final int creditsPerRequest;
+
+    /**
+     * @param share             the share the requests are sent on
+     * @param maxInFlight       the maximum number of requests in flight
+     * @param creditsPerRequest the number of credits that a single request is charged
+     */
+    CreditWindow(Share share, int maxInFlight, int creditsPerRequest) {
+        this.share = share;
+        this.maxInFlight = maxInFlight;
+        this.creditsPerRequest = creditsPerRequest;
+    }
+
+    /**
+     * @return the number of credits charged for a request or response with the given payload size
+     */
+    static int creditsFor(int payloadSize) {
+        return (payloadSize - 1) / SMB2Packet.SINGLE_CREDIT_PAYLOAD_SIZE + 1;
+    }
+
+    boolean canSend(int inFlight) {
+        if (inFlight == 0) {
+            return true;
+        }
+        return inFlight < maxInFlight && share.getAvailableCredits() > creditsPerRequest;
+    }
+}
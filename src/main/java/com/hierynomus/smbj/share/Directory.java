@@ -28,10 +28,14 @@ import com.hierynomus.mssmb2.SMBApiException;
 import com.hierynomus.mssmb2.messages.SMB2ChangeNotifyResponse;
 import com.hierynomus.mssmb2.messages.SMB2QueryDirectoryRequest;
 import com.hierynomus.mssmb2.messages.SMB2QueryDirectoryResponse;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
+import com.hierynomus.protocol.commons.concurrent.SettableFuture;
 import com.hierynomus.smbj.common.SmbPath;
 
 import java.util.*;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Directory extends DiskEntry implements Iterable<FileIdBothDirectoryInformation> {
     Directory(SMB2FileId fileId, DiskShare diskShare, SmbPath fileName) {
@@ -71,6 +75,68 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
         return fileList;
     }
 
+    /**
+     * Asynchronous variant of {@link #list(Class, String)}. Every QUERY_DIRECTORY request is sent from the callback of
+     * the previous response, which runs on the continuation executor of the client, no thread waits in between.
+     */
+    public <F extends FileDirectoryQueryableInformation> AFuture<List<F>> listAsync(Class<F> informationClass, String searchPattern) {
+        SettableFuture<List<F>> result = new SettableFuture<>();
+        queryDirectoryAsync(FileInformationFactory.getDecoder(informationClass), searchPattern, null, new ArrayList<F>(), result);
+        return result;
+    }
+
+    /**
+     * Whether a QUERY_DIRECTORY response ends the listing.
+     * <p>
+     * The macOS SMB server doesn't always send a STATUS_NO_MORE_FILES response. Instead it keeps on sending an
+     * identical response back, so a response that is identical to the previous one ends the listing as well.
+     * Additionally, STATUS_NO_SUCH_FILE is being returned when searchPattern does not match any files.
+     *
+     * @param previousBuffer the output buffer of the previous response, or <code>null</code> for the first response
+     */
+    static boolean isEndOfListing(SMB2QueryDirectoryResponse response, byte[] previousBuffer) {
+        long status = response.getHeader().getStatusCode();
+        return status == NtStatus.STATUS_NO_MORE_FILES.getValue() || status == NtStatus.STATUS_NO_SUCH_FILE.getValue()
+            || (previousBuffer != null && Arrays.equals(previousBuffer, response.getOutputBuffer()));
+    }
+
+    private <F extends FileDirectoryQueryableInformation> void queryDirectoryAsync(final FileInformation.Decoder<F> decoder,
+            final String searchPattern, final byte[] previousBuffer, final List<F> collected, final SettableFuture<List<F>> result) {
+        EnumSet<SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags> flags;
+        if (previousBuffer == null) {
+            flags = EnumSet.of(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.SMB2_RESTART_SCANS);
+        } else {
+            flags = EnumSet.noneOf(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.class);
+        }
+
+        AFuture<SMB2QueryDirectoryResponse> query = share.queryDirectoryAsync(fileId, flags, decoder.getInformationClass(), searchPattern);
+        query.onComplete(new AFuture.Callback<SMB2QueryDirectoryResponse>() {
+            @Override
+            public void onSuccess(SMB2QueryDirectoryResponse qdResp) {
+                byte[] buffer = qdResp.getOutputBuffer();
+                if (isEndOfListing(qdResp, previousBuffer)) {
+                    result.set(collected);
+                    return;
+                }
+                try {
+                    Iterator<F> iterator = FileInformationFactory.createFileInformationIterator(buffer, decoder);
+                    while (iterator.hasNext()) {
+                        collected.add(iterator.next());
+                    }
+                } catch (RuntimeException e) {
+                    result.setException(e);
+                    return;
+                }
+                queryDirectoryAsync(decoder, searchPattern, buffer, collected, result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(t);
+            }
+        }, share.getContinuationExecutor());
+    }
+
     /**
      * Equivalent to calling {@link #iterator(Class, String) iterator(FileIdBothDirectoryInformation.class, null)}.
      *
@@ -112,6 +178,18 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
         return new DirectoryIterator<>(informationClass, searchPattern);
     }
 
+    /**
+     * Returns the contents of this directory as a sequential stream, with the same search pattern semantics as
+     * {@link #iterator(Class, String)}. Only the page of results that is being consumed and the next page, which is
+     * requested ahead, are kept in memory, so that arbitrarily large directories can be enumerated.
+     * Note: on Android this requires API level 24 or core library desugaring.
+     */
+    public <F extends FileDirectoryQueryableInformation> Stream<F> stream(Class<F> informationClass, String searchPattern) {
+        Spliterator<F> spliterator = Spliterators.spliteratorUnknownSize(iterator(informationClass, searchPattern),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
     /***
      * Send a change notify request and and return a Future for change notify
      * response.
@@ -141,6 +219,7 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
         private byte[] currentBuffer;
         private F next;
         private String searchPattern;
+        private AFuture<SMB2QueryDirectoryResponse> prefetched;
 
         DirectoryIterator(Class<F> informationClass, String searchPattern) {
             decoder = FileInformationFactory.getDecoder(informationClass);
@@ -189,21 +268,24 @@ public class Directory extends DiskEntry implements Iterable<FileIdBothDirectory
 
             FileInformationClass informationClass = decoder.getInformationClass();
 
-            SMB2QueryDirectoryResponse qdResp = share.queryDirectory(fileId, flags, informationClass, searchPattern);
+            SMB2QueryDirectoryResponse qdResp;
+            if (prefetched != null) {
+                qdResp = share.await(prefetched, share.getTransactTimeout());
+                prefetched = null;
+            } else {
+                qdResp = share.queryDirectory(fileId, flags, informationClass, searchPattern);
+            }
 
-            long status = qdResp.getHeader().getStatusCode();
             byte[] buffer = qdResp.getOutputBuffer();
-
-            // The macOS SMB server doesn't always send a STATUS_NO_MORE_FILES response. Instead it keeps on sending
-            // an identical response back. Detect if the response is identical to the previous one and abort the loop
-            // if that's the case.
-            // Additionally, STATUS_NO_SUCH_FILE is being returned when searchPattern does not match any files
-            if (status == NtStatus.STATUS_NO_MORE_FILES.getValue() || status == NtStatus.STATUS_NO_SUCH_FILE.getValue() || (currentBuffer != null && Arrays.equals(currentBuffer, buffer))) {
+            if (isEndOfListing(qdResp, currentBuffer)) {
                 currentIterator = null;
                 currentBuffer = null;
             } else {
                 currentBuffer = buffer;
                 currentIterator = FileInformationFactory.createFileInformationIterator(currentBuffer, decoder);
+                // Request the next page while the caller works through this one. The server continues the
+                // enumeration where the previous request stopped, so there is never more than one request in flight.
+                prefetched = share.queryDirectoryAsync(fileId, EnumSet.noneOf(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.class), informationClass, searchPattern);
             }
         }
 
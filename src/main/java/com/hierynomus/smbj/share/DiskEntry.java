@@ -27,6 +27,7 @@ import com.hierynomus.msfscc.fileinformation.FileRenameInformation;
 import com.hierynomus.msfscc.fileinformation.FileSettableInformation;
 import com.hierynomus.mssmb2.SMB2FileId;
 import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.smbj.common.SmbPath;
 
 import org.slf4j.Logger;
@@ -89,6 +90,18 @@ public abstract class DiskEntry extends Open<DiskShare> {
         share.setFileInformation(fileId, information);
     }
 
+    public AFuture<FileAllInformation> getFileInformationAsync() {
+        return getFileInformationAsync(FileAllInformation.class);
+    }
+
+    public <F extends FileQueryableInformation> AFuture<F> getFileInformationAsync(Class<F> informationClass) {
+        return share.getFileInformationAsync(fileId, informationClass);
+    }
+
+    public <F extends FileSettableInformation> AFuture<Void> setFileInformationAsync(F information) {
+        return share.setFileInformationAsync(fileId, information);
+    }
+
     public SecurityDescriptor getSecurityInformation(Set<SecurityInformation> securityInfo) throws SMBApiException {
         return share.getSecurityInfo(fileId, securityInfo);
     }
@@ -132,6 +145,11 @@ public abstract class DiskEntry extends Open<DiskShare> {
         this.setFileInformation(renameInfo);
     }
 
+    public AFuture<Void> renameAsync(String newName, boolean replaceIfExist) {
+        FileRenameInformation renameInfo = new FileRenameInformation(replaceIfExist, 0, newName);
+        return setFileInformationAsync(renameInfo);
+    }
+
     /**
      * Creates hard link for receiver.<br/>
      * This method is a shortcut for
@@ -231,6 +249,10 @@ public abstract class DiskEntry extends Open<DiskShare> {
         share.deleteOnClose(fileId);
     }
 
+    public AFuture<Void> deleteOnCloseAsync() {
+        return share.deleteOnCloseAsync(fileId);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -22,12 +22,18 @@ import com.hierynomus.msfscc.FileAttributes;
 import com.hierynomus.msfscc.FileSystemInformationClass;
 import com.hierynomus.msfscc.fileinformation.*;
 import com.hierynomus.mssmb2.*;
+import com.hierynomus.mssmb2.messages.SMB2Close;
 import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
 import com.hierynomus.mssmb2.messages.SMB2QueryInfoRequest;
+import com.hierynomus.mssmb2.messages.SMB2QueryInfoResponse;
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
 import com.hierynomus.mssmb2.messages.SMB2SetInfoRequest;
-import com.hierynomus.protocol.commons.EnumWithValue;
+import com.hierynomus.mssmb2.messages.SMB2SetInfoResponse;
 import com.hierynomus.protocol.commons.buffer.Buffer;
 import com.hierynomus.protocol.commons.buffer.Endian;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.commons.concurrent.SettableFuture;
 import com.hierynomus.smb.SMBBuffer;
 import com.hierynomus.smbj.common.SMBRuntimeException;
 import com.hierynomus.smbj.common.SmbPath;
@@ -36,8 +42,13 @@ import com.hierynomus.smbj.paths.PathResolver;
 import com.hierynomus.smbj.session.Session;
 
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
 import static com.hierynomus.msdtyp.AccessMask.*;
 import static com.hierynomus.mserref.NtStatus.*;
@@ -66,6 +77,26 @@ public class DiskShare extends Share {
         return getDiskEntry(response);
     }
 
+    /**
+     * Asynchronous variant of {@link #open(String, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     * <p/>
+     * The CREATE request is sent without blocking. Only DFS referrals that are not cached yet are looked up on the
+     * calling thread. Resolving a symbolic link or DFS link reported in the CREATE response can take more round
+     * trips that block, so that happens on a separate thread.
+     *
+     * @return a future of the opened entry, which fails with an {@link SMBApiException} if the open failed
+     */
+    public AFuture<DiskEntry> openAsync(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        SmbPath pathAndFile = new SmbPath(smbPath, path);
+        return resolveAndCreateFileAsync(pathAndFile, null, accessMask, attributes, shareAccesses, createDisposition, createOptions)
+            .thenApply(new AFuture.Function<SMB2CreateResponseContext, DiskEntry>() {
+                @Override
+                public DiskEntry apply(SMB2CreateResponseContext responseContext) {
+                    return getDiskEntry(responseContext);
+                }
+            });
+    }
+
     @Override
     protected StatusHandler getCreateStatusHandler() {
         return resolver.statusHandler();
@@ -117,6 +148,84 @@ public class DiskShare extends Share {
         }
     }
 
+    private AFuture<SMB2CreateResponseContext> resolveAndCreateFileAsync(final SmbPath path,
+            final SMB2ImpersonationLevel impersonationLevel, final Set<AccessMask> accessMask,
+            final Set<FileAttributes> fileAttributes, final Set<SMB2ShareAccess> shareAccess,
+            final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions) {
+        try {
+            return resolver.resolve(session, path, new PathResolver.ResolveAction<AFuture<SMB2CreateResponseContext>>() {
+                @Override
+                public AFuture<SMB2CreateResponseContext> apply(SmbPath target) {
+                    DiskShare resolvedShare = rerouteIfNeeded(path, target);
+                    return resolvedShare.createFileAndResolveAsync(target, impersonationLevel, accessMask, fileAttributes,
+                            shareAccess, createDisposition, createOptions);
+                }
+            });
+        } catch (PathResolveException pre) {
+            return Futures.failed(new SMBApiException(pre.getStatus().getValue(), SMB2MessageCommandCode.SMB2_CREATE,
+                    "Cannot resolve path " + path, pre));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    private AFuture<SMB2CreateResponseContext> createFileAndResolveAsync(final SmbPath path, final SMB2ImpersonationLevel impersonationLevel, final Set<AccessMask> accessMask, final Set<FileAttributes> fileAttributes, final Set<SMB2ShareAccess> shareAccess, final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions) {
+        AFuture<SMB2CreateResponse> create = super.createFileAsync(path, impersonationLevel, accessMask, fileAttributes, shareAccess, createDisposition, createOptions);
+        return create.thenCompose(new AFuture.Function<SMB2CreateResponse, AFuture<SMB2CreateResponseContext>>() {
+            @Override
+            public AFuture<SMB2CreateResponseContext> apply(final SMB2CreateResponse resp) {
+                if (resp.getHeader().getStatusCode() == STATUS_SUCCESS.getValue()) {
+                    return Futures.completed(new SMB2CreateResponseContext(resp, path, DiskShare.this));
+                }
+
+                // The status handler accepted a status that asks for path resolution. That can mean more requests
+                // that block (e.g. DFS referrals), so keep it off the thread that processes the responses.
+                final SettableFuture<SMB2CreateResponseContext> result = new SettableFuture<>();
+                try {
+                    getContinuationExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                resolveCreateResponseAsync(resp, path, impersonationLevel, accessMask, fileAttributes,
+                                        shareAccess, createDisposition, createOptions).onComplete(result.completer());
+                            } catch (RuntimeException e) {
+                                result.setException(e);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    result.setException(e);
+                }
+                return result;
+            }
+        });
+    }
+
+    private AFuture<SMB2CreateResponseContext> resolveCreateResponseAsync(SMB2CreateResponse resp, final SmbPath path, final SMB2ImpersonationLevel impersonationLevel, final Set<AccessMask> accessMask, final Set<FileAttributes> fileAttributes, final Set<SMB2ShareAccess> shareAccess, final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions) {
+        try {
+            AFuture<SMB2CreateResponseContext> target = resolver.resolve(session, resp, path, new PathResolver.ResolveAction<AFuture<SMB2CreateResponseContext>>() {
+                @Override
+                public AFuture<SMB2CreateResponseContext> apply(SmbPath target) {
+                    DiskShare resolveShare = rerouteIfNeeded(path, target);
+                    if (!path.equals(target)) {
+                        return resolveShare.createFileAndResolveAsync(target, impersonationLevel, accessMask, fileAttributes, shareAccess, createDisposition, createOptions);
+                    } else {
+                        return null;
+                    }
+                }
+            });
+
+            if (target != null) {
+                return target;
+            }
+
+            return Futures.completed(new SMB2CreateResponseContext(resp, path, this));
+        } catch (PathResolveException e) {
+            return Futures.failed(new SMBApiException(e.getStatusCode(), SMB2MessageCommandCode.SMB2_CREATE,
+                    "Cannot resolve path " + path, e));
+        }
+    }
+
     private DiskShare rerouteIfNeeded(SmbPath path, SmbPath target) {
         Session connectedSession = this.session;
         if (!path.isOnSameHost(target)) {
@@ -128,6 +237,268 @@ public class DiskShare extends Share {
         return this;
     }
 
+    /**
+     * A request on a handle that is sent in the same compounded round trip as the CREATE that opens the handle and the
+     * CLOSE that closes it again.
+     */
+    abstract static class HandleRequest<R extends SMB2Packet, T> {
+        abstract AFuture<R> addTo(CompoundRequest compound, SMB2FileId fileId);
+
+        abstract T convert(SMB2CreateResponse createResponse, R response);
+    }
+
+    /**
+     * Open the path, send the request on the opened handle and close it in a single compounded round trip, instead of
+     * waiting for the CREATE response before sending the next request. When the server asks for the path to be
+     * resolved (symbolic links, DFS links), the chain is sent again for the resolved path. If compounding is disabled
+     * in the config, the requests are sent one after the other.
+     *
+     * @param request the request to send on the handle, or <code>null</code> to only open and close the path
+     * @return the converted response, or <code>null</code> if no request was sent
+     */
+    <R extends SMB2Packet, T> T openRequestAndClose(String path, final Set<AccessMask> accessMask,
+            final Set<FileAttributes> attributes, final Set<SMB2ShareAccess> shareAccess,
+            final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions,
+            final HandleRequest<R, T> request) {
+        final SmbPath pathAndFile = new SmbPath(smbPath, path);
+        if (!isCompoundRequests()) {
+            return openThenRequestAndClose(pathAndFile, accessMask, attributes, shareAccess, createDisposition, createOptions, request);
+        }
+        try {
+            return resolver.resolve(session, pathAndFile, new PathResolver.ResolveAction<T>() {
+                @Override
+                public T apply(SmbPath target) {
+                    DiskShare resolvedShare = rerouteIfNeeded(pathAndFile, target);
+                    return resolvedShare.openRequestAndClose(target, accessMask, attributes, shareAccess, createDisposition, createOptions, request);
+                }
+            });
+        } catch (PathResolveException pre) {
+            throw new SMBApiException(pre.getStatus().getValue(), SMB2MessageCommandCode.SMB2_CREATE,
+                    "Cannot resolve path " + pathAndFile, pre);
+        }
+    }
+
+    private <R extends SMB2Packet, T> T openRequestAndClose(final SmbPath path, final Set<AccessMask> accessMask,
+            final Set<FileAttributes> attributes, final Set<SMB2ShareAccess> shareAccess,
+            final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions,
+            final HandleRequest<R, T> request) {
+        CompoundRequest compound = compound();
+        AFuture<SMB2CreateResponse> create = compound.create(path, null, accessMask, attributes, shareAccess, createDisposition, createOptions);
+        AFuture<R> response = request != null ? request.addTo(compound, CompoundRequest.RELATED_FILE_ID) : null;
+        AFuture<SMB2Close> close = compound.close(CompoundRequest.RELATED_FILE_ID);
+        compound.send();
+
+        final SMB2CreateResponse createResponse = await(create, getTransactTimeout());
+        if (createResponse.getHeader().getStatusCode() != STATUS_SUCCESS.getValue()) {
+            // Nothing was opened, so the related requests failed as well. Resend them for the resolved path.
+            try {
+                return resolver.resolve(session, createResponse, path, new PathResolver.ResolveAction<T>() {
+                    @Override
+                    public T apply(SmbPath target) {
+                        if (path.equals(target)) {
+                            throw new SMBApiException(createResponse.getHeader(), "Create failed for " + path);
+                        }
+                        DiskShare resolvedShare = rerouteIfNeeded(path, target);
+                        return resolvedShare.openRequestAndClose(target, accessMask, attributes, shareAccess, createDisposition, createOptions, request);
+                    }
+                });
+            } catch (PathResolveException e) {
+                throw new SMBApiException(e.getStatusCode(), SMB2MessageCommandCode.SMB2_CREATE,
+                        "Cannot resolve path " + path, e);
+            }
+        }
+        return await(convertAndClose(createResponse, response, close, request), getTransactTimeout());
+    }
+
+    /**
+     * Asynchronous variant of {@link #openRequestAndClose(String, Set, Set, Set, SMB2CreateDisposition, Set, HandleRequest)}.
+     * When the path needs to be resolved, the chain is sent again from the continuation executor.
+     */
+    <R extends SMB2Packet, T> AFuture<T> openRequestAndCloseAsync(String path, final Set<AccessMask> accessMask,
+            final Set<FileAttributes> attributes, final Set<SMB2ShareAccess> shareAccess,
+            final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions,
+            final HandleRequest<R, T> request) {
+        final SmbPath pathAndFile = new SmbPath(smbPath, path);
+        if (!isCompoundRequests()) {
+            return openThenRequestAndCloseAsync(pathAndFile, accessMask, attributes, shareAccess, createDisposition, createOptions, request);
+        }
+        try {
+            return resolver.resolve(session, pathAndFile, new PathResolver.ResolveAction<AFuture<T>>() {
+                @Override
+                public AFuture<T> apply(SmbPath target) {
+                    DiskShare resolvedShare = rerouteIfNeeded(pathAndFile, target);
+                    return resolvedShare.openRequestAndCloseAsync(target, accessMask, attributes, shareAccess, createDisposition, createOptions, request);
+                }
+            });
+        } catch (PathResolveException pre) {
+            return Futures.failed(new SMBApiException(pre.getStatus().getValue(), SMB2MessageCommandCode.SMB2_CREATE,
+                    "Cannot resolve path " + pathAndFile, pre));
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    private <R extends SMB2Packet, T> AFuture<T> openRequestAndCloseAsync(final SmbPath path, final Set<AccessMask> accessMask,
+            final Set<FileAttributes> attributes, final Set<SMB2ShareAccess> shareAccess,
+            final SMB2CreateDisposition createDisposition, final Set<SMB2CreateOptions> createOptions,
+            final HandleRequest<R, T> request) {
+        CompoundRequest compound = compound();
+        AFuture<SMB2CreateResponse> create = compound.create(path, null, accessMask, attributes, shareAccess, createDisposition, createOptions);
+        final AFuture<R> response = request != null ? request.addTo(compound, CompoundRequest.RELATED_FILE_ID) : null;
+        final AFuture<SMB2Close> close = compound.close(CompoundRequest.RELATED_FILE_ID);
+        compound.send();
+
+        return create.thenCompose(new AFuture.Function<SMB2CreateResponse, AFuture<T>>() {
+            @Override
+            public AFuture<T> apply(final SMB2CreateResponse createResponse) {
+                if (createResponse.getHeader().getStatusCode() == STATUS_SUCCESS.getValue()) {
+                    return convertAndClose(createResponse, response, close, request);
+                }
+
+                // Nothing was opened. Resolving the path can send more requests that block (e.g. DFS referrals), so
+                // keep it off the thread that processes the responses.
+                final SettableFuture<T> result = new SettableFuture<>();
+                try {
+                    getContinuationExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                resendForResolvedPathAsync(createResponse, path, accessMask, attributes, shareAccess,
+                                        createDisposition, createOptions, request).onComplete(result.completer());
+                            } catch (RuntimeException e) {
+                                result.setException(e);
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    result.setException(e);
+                }
+                return result;
+            }
+        });
+    }
+
+    private <R extends SMB2Packet, T> AFuture<T> resendForResolvedPathAsync(final SMB2CreateResponse createResponse,
+            final SmbPath path, final Set<AccessMask> accessMask, final Set<FileAttributes> attributes,
+            final Set<SMB2ShareAccess> shareAccess, final SMB2CreateDisposition createDisposition,
+            final Set<SMB2CreateOptions> createOptions, final HandleRequest<R, T> request) {
+        try {
+            return resolver.resolve(session, createResponse, path, new PathResolver.ResolveAction<AFuture<T>>() {
+                @Override
+                public AFuture<T> apply(SmbPath target) {
+                    if (path.equals(target)) {
+                        return Futures.failed(new SMBApiException(createResponse.getHeader(), "Create failed for " + path));
+                    }
+                    DiskShare resolvedShare = rerouteIfNeeded(path, target);
+                    return resolvedShare.openRequestAndCloseAsync(target, accessMask, attributes, shareAccess, createDisposition, createOptions, request);
+                }
+            });
+        } catch (PathResolveException e) {
+            return Futures.failed(new SMBApiException(e.getStatusCode(), SMB2MessageCommandCode.SMB2_CREATE,
+                    "Cannot resolve path " + path, e));
+        }
+    }
+
+    /**
+     * Convert the response of the request on an opened handle once the CLOSE of the handle has completed as well. Like
+     * closing the handle of a try-with-resources block, a failed CLOSE fails the operation, or is added as suppressed
+     * exception when the request itself failed.
+     */
+    private static <R extends SMB2Packet, T> AFuture<T> convertAndClose(final SMB2CreateResponse createResponse,
+            AFuture<R> response, final AFuture<SMB2Close> close, final HandleRequest<R, T> request) {
+        AFuture<T> converted;
+        if (response != null) {
+            converted = response.thenApply(new AFuture.Function<R, T>() {
+                @Override
+                public T apply(R r) {
+                    return request.convert(createResponse, r);
+                }
+            });
+        } else {
+            converted = Futures.completed(null);
+        }
+
+        final SettableFuture<T> result = new SettableFuture<>();
+        converted.onComplete(new AFuture.Callback<T>() {
+            @Override
+            public void onSuccess(final T value) {
+                close.onComplete(new AFuture.Callback<SMB2Close>() {
+                    @Override
+                    public void onSuccess(SMB2Close c) {
+                        result.set(value);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        result.setException(t);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                close.onComplete(new AFuture.Callback<SMB2Close>() {
+                    @Override
+                    public void onSuccess(SMB2Close c) {
+                        result.setException(t);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable closeError) {
+                        t.addSuppressed(closeError);
+                        result.setException(t);
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    private <R extends SMB2Packet, T> T openThenRequestAndClose(SmbPath path, Set<AccessMask> accessMask,
+            Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccess,
+            SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions,
+            HandleRequest<R, T> request) {
+        SMB2CreateResponseContext context = resolveAndCreateFile(path, null, accessMask, attributes, shareAccess, createDisposition, createOptions);
+        try (DiskEntry entry = getDiskEntry(context)) {
+            if (request == null) {
+                return null;
+            }
+            CompoundRequest single = context.share.compound();
+            AFuture<R> response = request.addTo(single, entry.getFileId());
+            single.send();
+            return request.convert(context.resp, await(response, getTransactTimeout()));
+        }
+    }
+
+    private <R extends SMB2Packet, T> AFuture<T> openThenRequestAndCloseAsync(SmbPath path, Set<AccessMask> accessMask,
+            Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccess,
+            SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions,
+            final HandleRequest<R, T> request) {
+        AFuture<SMB2CreateResponseContext> open = resolveAndCreateFileAsync(path, null, accessMask, attributes, shareAccess, createDisposition, createOptions);
+        return open.thenCompose(new AFuture.Function<SMB2CreateResponseContext, AFuture<T>>() {
+            @Override
+            public AFuture<T> apply(final SMB2CreateResponseContext context) {
+                return useAndCloseAsync(Futures.completed(getDiskEntry(context)), new AFuture.Function<DiskEntry, AFuture<T>>() {
+                    @Override
+                    public AFuture<T> apply(DiskEntry entry) {
+                        if (request == null) {
+                            return Futures.completed(null);
+                        }
+                        CompoundRequest single = context.share.compound();
+                        AFuture<R> response = request.addTo(single, entry.getFileId());
+                        single.send();
+                        return response.thenApply(new AFuture.Function<R, T>() {
+                            @Override
+                            public T apply(R r) {
+                                return request.convert(context.resp, r);
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
     protected DiskEntry getDiskEntry(SMB2CreateResponseContext responseContext) {
         SMB2CreateResponse response = responseContext.resp;
         if (response.getFileAttributes().contains(FILE_ATTRIBUTE_DIRECTORY)) {
@@ -176,6 +547,102 @@ public class DiskShare extends Share {
         );
     }
 
+    /**
+     * Asynchronous variant of {@link #openDirectory(String, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     */
+    public AFuture<Directory> openDirectoryAsync(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        EnumSet<SMB2CreateOptions> actualCreateOptions = createOptions != null ? EnumSet.copyOf(createOptions) : EnumSet.noneOf(SMB2CreateOptions.class);
+        actualCreateOptions.add(FILE_DIRECTORY_FILE);
+        actualCreateOptions.remove(FILE_NON_DIRECTORY_FILE);
+
+        EnumSet<FileAttributes> actualAttributes = attributes != null ? EnumSet.copyOf(attributes) : EnumSet.noneOf(FileAttributes.class);
+        actualAttributes.add(FILE_ATTRIBUTE_DIRECTORY);
+
+        return openAsync(path, accessMask, actualAttributes, shareAccesses, createDisposition, actualCreateOptions)
+            .thenApply(new AFuture.Function<DiskEntry, Directory>() {
+                @Override
+                public Directory apply(DiskEntry entry) {
+                    return (Directory) entry;
+                }
+            });
+    }
+
+    /**
+     * Asynchronous variant of {@link #openFile(String, Set, Set, Set, SMB2CreateDisposition, Set)}.
+     */
+    public AFuture<File> openFileAsync(String path, Set<AccessMask> accessMask, Set<FileAttributes> attributes, Set<SMB2ShareAccess> shareAccesses, SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        EnumSet<SMB2CreateOptions> actualCreateOptions = createOptions != null ? EnumSet.copyOf(createOptions) : EnumSet.noneOf(SMB2CreateOptions.class);
+        actualCreateOptions.add(FILE_NON_DIRECTORY_FILE);
+        actualCreateOptions.remove(FILE_DIRECTORY_FILE);
+
+        EnumSet<FileAttributes> actualAttributes = attributes != null ? EnumSet.copyOf(attributes) : EnumSet.noneOf(FileAttributes.class);
+        actualAttributes.remove(FILE_ATTRIBUTE_DIRECTORY);
+
+        return openAsync(path, accessMask, actualAttributes, shareAccesses, createDisposition, actualCreateOptions)
+            .thenApply(new AFuture.Function<DiskEntry, File>() {
+                @Override
+                public File apply(DiskEntry entry) {
+                    return (File) entry;
+                }
+            });
+    }
+
+    /**
+     * Run an asynchronous action on an entry that is being opened and close the entry afterwards, like a
+     * try-with-resources block does for the synchronous API. The returned future completes once the entry is
+     * closed. If the action failed, it fails with the action's error. If only the close failed, it fails with
+     * the close error. The action and the close are sent from the continuation executor, never from the thread that
+     * processes the responses.
+     */
+    <E extends DiskEntry, T> AFuture<T> useAndCloseAsync(AFuture<E> open, final AFuture.Function<E, AFuture<T>> action) {
+        final Executor continuations = getContinuationExecutor();
+        return open.thenCompose(new AFuture.Function<E, AFuture<T>>() {
+            @Override
+            public AFuture<T> apply(final E entry) {
+                final SettableFuture<T> result = new SettableFuture<>();
+                AFuture<T> actionResult;
+                try {
+                    actionResult = action.apply(entry);
+                } catch (RuntimeException e) {
+                    actionResult = Futures.failed(e);
+                }
+                actionResult.onComplete(new AFuture.Callback<T>() {
+                    @Override
+                    public void onSuccess(final T value) {
+                        entry.closeAsync().onComplete(new AFuture.Callback<Void>() {
+                            @Override
+                            public void onSuccess(Void v) {
+                                result.set(value);
+                            }
+
+                            @Override
+                            public void onFailure(Throwable t) {
+                                result.setException(t);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable t) {
+                        entry.closeAsync().onComplete(new AFuture.Callback<Void>() {
+                            @Override
+                            public void onSuccess(Void v) {
+                                result.setException(t);
+                            }
+
+                            @Override
+                            public void onFailure(Throwable closeError) {
+                                t.addSuppressed(closeError);
+                                result.setException(t);
+                            }
+                        });
+                    }
+                }, continuations);
+                return result;
+            }
+        }, continuations);
+    }
+
     private static final StatusHandler FILE_EXISTS_STATUS_HANDLER = new StatusHandler() {
         @Override
         public boolean isSuccess(long statusCode) {
@@ -211,7 +678,8 @@ public class DiskShare extends Share {
     }
 
     private boolean exists(String path, EnumSet<SMB2CreateOptions> createOptions, StatusHandler statusHandler) throws SMBApiException {
-        try (DiskEntry ignored = open(path, of(FILE_READ_ATTRIBUTES), of(FILE_ATTRIBUTE_NORMAL), ALL, FILE_OPEN, createOptions)) {
+        try {
+            this.<SMB2Packet, Void>openRequestAndClose(path, of(FILE_READ_ATTRIBUTES), of(FILE_ATTRIBUTE_NORMAL), ALL, FILE_OPEN, createOptions, null);
             return true;
         } catch (SMBApiException sae) {
             if (statusHandler.isSuccess(sae.getStatusCode())) {
@@ -267,18 +735,124 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * Create a walker for the directory tree below the given path, which lists multiple directories concurrently.
+     *
+     * @param path the root of the tree, relative to the share
+     * @return a walker that can be configured before calling {@link TreeWalker#walk(TreeWalker.Visitor)}
+     */
+    public TreeWalker walker(String path) {
+        return new TreeWalker(this, path == null ? "" : path);
+    }
+
+    /**
+     * Equivalent to calling {@link #stream(String, Class, String, EnumSet) stream(path, FileIdBothDirectoryInformation.class, null, null)}.
+     */
+    public Stream<FileIdBothDirectoryInformation> stream(String path) throws SMBApiException {
+        return stream(path, FileIdBothDirectoryInformation.class, null, null);
+    }
+
+    /**
+     * Streaming variant of {@link #list(String, Class, String, EnumSet)}, which does not collect the directory contents
+     * in memory, see {@link Directory#stream(Class, String)}. The directory stays open until the stream is closed, so
+     * the stream should be used in a try-with-resources block.
+     */
+    public <I extends FileDirectoryQueryableInformation> Stream<I> stream(String path, Class<I> informationClass, String searchPattern, EnumSet<AccessMask> accessMask) {
+        final Directory d = openDirectory(path,
+                accessMask == null ? of(FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES, FILE_READ_EA) : accessMask,
+            null, ALL, FILE_OPEN, null);
+        try {
+            return d.stream(informationClass, searchPattern).onClose(new Runnable() {
+                @Override
+                public void run() {
+                    d.closeSilently();
+                }
+            });
+        } catch (RuntimeException e) {
+            d.closeSilently();
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #list(String)}.
+     */
+    public AFuture<List<FileIdBothDirectoryInformation>> listAsync(String path) {
+        return listAsync(path, FileIdBothDirectoryInformation.class, null, null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #list(String, Class, String, EnumSet)}. The directory is closed before the
+     * returned future completes.
+     */
+    public <I extends FileDirectoryQueryableInformation> AFuture<List<I>> listAsync(String path, final Class<I> informationClass, final String searchPattern, EnumSet<AccessMask> accessMask) {
+        AFuture<Directory> open = openDirectoryAsync(path,
+                accessMask == null ? of(FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES, FILE_READ_EA) : accessMask,
+            null, ALL, FILE_OPEN, null);
+        return useAndCloseAsync(open, new AFuture.Function<Directory, AFuture<List<I>>>() {
+            @Override
+            public AFuture<List<I>> apply(Directory d) {
+                return d.listAsync(informationClass, searchPattern);
+            }
+        });
+    }
+
     /**
      * Create a directory in the given path.
      */
     public void mkdir(String path) throws SMBApiException {
-        Directory fileHandle = openDirectory(
+        this.<SMB2Packet, Void>openRequestAndClose(
             path,
             of(FILE_LIST_DIRECTORY, FILE_ADD_SUBDIRECTORY),
             of(FILE_ATTRIBUTE_DIRECTORY),
             ALL,
             FILE_CREATE,
-            of(FILE_DIRECTORY_FILE));
-        fileHandle.close();
+            of(FILE_DIRECTORY_FILE),
+            null);
+    }
+
+    /**
+     * Asynchronous variant of {@link #mkdir(String)}.
+     */
+    public AFuture<Void> mkdirAsync(String path) {
+        return this.<SMB2Packet, Void>openRequestAndCloseAsync(
+            path,
+            of(FILE_LIST_DIRECTORY, FILE_ADD_SUBDIRECTORY),
+            of(FILE_ATTRIBUTE_DIRECTORY),
+            ALL,
+            FILE_CREATE,
+            of(FILE_DIRECTORY_FILE),
+            null);
+    }
+
+    /**
+     * Read a small file in a single round trip, by sending the CREATE, a READ at offset 0 and the CLOSE as one compound
+     * request. Files that are larger than <code>maxBytes</code> or than the read buffer size are truncated, which can be
+     * checked with {@link SmallFile#isComplete()}.
+     *
+     * @param path     the path of the file, relative to the share
+     * @param maxBytes the maximum number of bytes to read
+     * @return the data that was read, together with the metadata returned when the file was opened
+     */
+    public SmallFile readSmallFile(String path, final int maxBytes) throws SMBApiException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes should be positive, was " + maxBytes);
+        }
+        return openRequestAndClose(path, of(FILE_READ_DATA, FILE_READ_ATTRIBUTES), null, ALL, FILE_OPEN, of(FILE_NON_DIRECTORY_FILE), new HandleRequest<SMB2ReadResponse, SmallFile>() {
+            @Override
+            AFuture<SMB2ReadResponse> addTo(CompoundRequest compound, SMB2FileId fileId) {
+                return compound.read(fileId, 0, maxBytes);
+            }
+
+            @Override
+            SmallFile convert(SMB2CreateResponse createResponse, SMB2ReadResponse response) {
+                if (response.getHeader().getStatusCode() == STATUS_END_OF_FILE.getValue()) {
+                    // The file is empty
+                    return new SmallFile(createResponse, new byte[0]);
+                }
+                return new SmallFile(createResponse, response.getData());
+            }
+        });
     }
 
     /**
@@ -292,9 +866,40 @@ public class DiskShare extends Share {
      * Get information about the given path.
      **/
     public <F extends FileQueryableInformation> F getFileInformation(String path, Class<F> informationClass) throws SMBApiException {
-        try (DiskEntry e = open(path, of(FILE_READ_ATTRIBUTES, FILE_READ_EA), null, ALL, FILE_OPEN, null)) {
-            return e.getFileInformation(informationClass);
-        }
+        return openRequestAndClose(path, of(FILE_READ_ATTRIBUTES, FILE_READ_EA), null, ALL, FILE_OPEN, null, fileInformationRequest(informationClass));
+    }
+
+    private static <F extends FileQueryableInformation> HandleRequest<SMB2QueryInfoResponse, F> fileInformationRequest(Class<F> informationClass) {
+        final FileInformation.Decoder<F> decoder = FileInformationFactory.getDecoder(informationClass);
+        return new HandleRequest<SMB2QueryInfoResponse, F>() {
+            @Override
+            AFuture<SMB2QueryInfoResponse> addTo(CompoundRequest compound, SMB2FileId fileId) {
+                return compound.queryInfo(fileId, SMB2QueryInfoRequest.SMB2QueryInfoType.SMB2_0_INFO_FILE, null, decoder.getInformationClass(), null);
+            }
+
+            @Override
+            F convert(SMB2CreateResponse createResponse, SMB2QueryInfoResponse response) {
+                try {
+                    return decoder.read(new Buffer.PlainBuffer(response.getOutputBuffer(), Endian.LE));
+                } catch (Buffer.BufferException e) {
+                    throw new SMBRuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Asynchronous variant of {@link #getFileInformation(String)}.
+     **/
+    public AFuture<FileAllInformation> getFileInformationAsync(String path) {
+        return getFileInformationAsync(path, FileAllInformation.class);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getFileInformation(String, Class)}.
+     **/
+    public <F extends FileQueryableInformation> AFuture<F> getFileInformationAsync(String path, Class<F> informationClass) {
+        return openRequestAndCloseAsync(path, of(FILE_READ_ATTRIBUTES, FILE_READ_EA), null, ALL, FILE_OPEN, null, fileInformationRequest(informationClass));
     }
 
     /**
@@ -322,6 +927,31 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #getFileInformation(SMB2FileId, Class)}.
+     **/
+    public <F extends FileQueryableInformation> AFuture<F> getFileInformationAsync(SMB2FileId fileId, Class<F> informationClass) {
+        final FileInformation.Decoder<F> decoder = FileInformationFactory.getDecoder(informationClass);
+
+        AFuture<SMB2QueryInfoResponse> query = queryInfoAsync(
+            fileId,
+            SMB2QueryInfoRequest.SMB2QueryInfoType.SMB2_0_INFO_FILE,
+            null,
+            decoder.getInformationClass(),
+            null
+        );
+        return query.thenApply(new AFuture.Function<SMB2QueryInfoResponse, F>() {
+            @Override
+            public F apply(SMB2QueryInfoResponse response) {
+                try {
+                    return decoder.read(new Buffer.PlainBuffer(response.getOutputBuffer(), Endian.LE));
+                } catch (Buffer.BufferException e) {
+                    throw new SMBRuntimeException(e);
+                }
+            }
+        });
+    }
+
     public <F extends FileSettableInformation> void setFileInformation(SMB2FileId fileId, F information) {
         SMBBuffer buffer = new SMBBuffer();
         FileInformation.Encoder<F> encoder = FileInformationFactory.getEncoder(information);
@@ -336,13 +966,79 @@ public class DiskShare extends Share {
         );
     }
 
+    /**
+     * Asynchronous variant of {@link #setFileInformation(SMB2FileId, FileSettableInformation)}.
+     */
+    public <F extends FileSettableInformation> AFuture<Void> setFileInformationAsync(SMB2FileId fileId, F information) {
+        SMBBuffer buffer = new SMBBuffer();
+        FileInformation.Encoder<F> encoder = FileInformationFactory.getEncoder(information);
+        encoder.write(information, buffer);
+
+        AFuture<SMB2SetInfoResponse> set = setInfoAsync(
+            fileId,
+            SMB2SetInfoRequest.SMB2InfoType.SMB2_0_INFO_FILE,
+            null,
+            encoder.getInformationClass(),
+            buffer.getCompactData()
+        );
+        return set.thenApply(new AFuture.Function<SMB2SetInfoResponse, Void>() {
+            @Override
+            public Void apply(SMB2SetInfoResponse response) {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Asynchronous variant of {@link #setFileInformation(String, FileSettableInformation)}.
+     */
+    public <F extends FileSettableInformation> AFuture<Void> setFileInformationAsync(String path, F information) {
+        return openRequestAndCloseAsync(path, of(FILE_WRITE_ATTRIBUTES, FILE_WRITE_EA), null, ALL, FILE_OPEN, null, setFileInformationRequest(information));
+    }
+
+    /**
+     * Rename the entry at the given path. The new name is relative to the share.
+     */
+    public AFuture<Void> renameAsync(String path, String newName, boolean replaceIfExist) {
+        return openRequestAndCloseAsync(path, of(DELETE), null, of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ), FILE_OPEN, null,
+            setFileInformationRequest(new FileRenameInformation(replaceIfExist, 0, newName)));
+    }
+
     /**
      * Get information for a given path
      **/
     public <F extends FileSettableInformation> void setFileInformation(String path, F information) throws SMBApiException {
-        try (DiskEntry e = open(path, of(FILE_WRITE_ATTRIBUTES, FILE_WRITE_EA), null, ALL, FILE_OPEN, null)) {
-            e.setFileInformation(information);
-        }
+        openRequestAndClose(path, of(FILE_WRITE_ATTRIBUTES, FILE_WRITE_EA), null, ALL, FILE_OPEN, null, setFileInformationRequest(information));
+    }
+
+    /**
+     * Rename the file or directory at the given path in a single round trip.
+     *
+     * @param path           the path to rename, relative to the share
+     * @param newName        the new path, relative to the share
+     * @param replaceIfExist whether an existing entry with the new name is replaced
+     */
+    public void rename(String path, String newName, boolean replaceIfExist) throws SMBApiException {
+        openRequestAndClose(path, of(DELETE), null, of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ), FILE_OPEN, null,
+            setFileInformationRequest(new FileRenameInformation(replaceIfExist, 0, newName)));
+    }
+
+    private static <F extends FileSettableInformation> HandleRequest<SMB2SetInfoResponse, Void> setFileInformationRequest(F information) {
+        SMBBuffer buffer = new SMBBuffer();
+        final FileInformation.Encoder<F> encoder = FileInformationFactory.getEncoder(information);
+        encoder.write(information, buffer);
+        final byte[] data = buffer.getCompactData();
+        return new HandleRequest<SMB2SetInfoResponse, Void>() {
+            @Override
+            AFuture<SMB2SetInfoResponse> addTo(CompoundRequest compound, SMB2FileId fileId) {
+                return compound.setInfo(fileId, SMB2SetInfoRequest.SMB2InfoType.SMB2_0_INFO_FILE, null, encoder.getInformationClass(), data);
+            }
+
+            @Override
+            Void convert(SMB2CreateResponse createResponse, SMB2SetInfoResponse response) {
+                return null;
+            }
+        };
     }
 
     /**
@@ -368,7 +1064,9 @@ public class DiskShare extends Share {
         }
     }
 
-    private static StatusHandler ALREADY_DELETED_STATUS_HANDLER = new StatusHandler() {
+    private static final int RECURSIVE_DELETE_MAX_OUTSTANDING = 32;
+
+    static final StatusHandler ALREADY_DELETED_STATUS_HANDLER = new StatusHandler() {
         @Override
         public boolean isSuccess(long statusCode) {
             return statusCode == STATUS_DELETE_PENDING.getValue();
@@ -377,6 +1075,10 @@ public class DiskShare extends Share {
 
     /**
      * Remove the directory at the given path.
+     * <p>
+     * A recursive delete lists directories and deletes files concurrently. When some entries cannot be deleted, all
+     * other entries are still deleted before the first failure is thrown, with the other failures attached to it as
+     * suppressed exceptions.
      */
     public void rmdir(String path, boolean recursive) throws SMBApiException {
         if (path == null || path.isEmpty()) {
@@ -384,29 +1086,26 @@ public class DiskShare extends Share {
         }
 
         if (recursive) {
-            List<FileIdBothDirectoryInformation> list = list(path);
-            for (FileIdBothDirectoryInformation fi : list) {
-                if (fi.getFileName().equals(".") || fi.getFileName().equals("..")) {
-                    continue;
-                }
-                String childPath = path + "\\" + fi.getFileName();
-                if (!EnumWithValue.EnumUtils.isSet(fi.getFileAttributes(), FILE_ATTRIBUTE_DIRECTORY)) {
-                    rm(childPath);
-                } else {
-                    rmdir(childPath, true);
+            Map<String, Throwable> failures = new RecursiveDelete(this, RECURSIVE_DELETE_MAX_OUTSTANDING).delete(path);
+            if (!failures.isEmpty()) {
+                // Everything that could be deleted is gone, report the first failure and attach the others to it.
+                Iterator<Throwable> errors = failures.values().iterator();
+                SMBRuntimeException failure = SMBRuntimeException.Wrapper.wrap(errors.next());
+                while (errors.hasNext()) {
+                    failure.addSuppressed(errors.next());
                 }
+                throw failure;
             }
-            rmdir(path, false);
         } else {
-            try (DiskEntry e = open(
-                path,
-                of(DELETE),
-                of(FILE_ATTRIBUTE_DIRECTORY),
-                of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
-                FILE_OPEN,
-                of(FILE_DIRECTORY_FILE)
-            )) {
-                e.deleteOnClose();
+            try {
+                openRequestAndClose(
+                    path,
+                    of(DELETE),
+                    of(FILE_ATTRIBUTE_DIRECTORY),
+                    of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+                    FILE_OPEN,
+                    of(FILE_DIRECTORY_FILE),
+                    setFileInformationRequest(new FileDispositionInformation(true)));
             } catch (SMBApiException sae) {
                 if (ALREADY_DELETED_STATUS_HANDLER.isSuccess(sae.getStatusCode())) {
                     return;
@@ -420,15 +1119,15 @@ public class DiskShare extends Share {
      * Remove the file at the given path
      */
     public void rm(String path) throws SMBApiException {
-        try (DiskEntry e = open(
-            path,
-            of(DELETE),
-            of(FILE_ATTRIBUTE_NORMAL),
-            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
-            FILE_OPEN,
-            of(FILE_NON_DIRECTORY_FILE)
-        )) {
-            e.deleteOnClose();
+        try {
+            openRequestAndClose(
+                path,
+                of(DELETE),
+                of(FILE_ATTRIBUTE_NORMAL),
+                of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+                FILE_OPEN,
+                of(FILE_NON_DIRECTORY_FILE),
+                setFileInformationRequest(new FileDispositionInformation(true)));
         } catch (SMBApiException sae) {
             if (ALREADY_DELETED_STATUS_HANDLER.isSuccess(sae.getStatusCode())) {
                 return;
@@ -437,6 +1136,61 @@ public class DiskShare extends Share {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #rmdir(String, boolean) rmdir(path, false)}.
+     */
+    public AFuture<Void> rmdirAsync(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("rmdir: path should be non-null and non-empty");
+        }
+        return ignoreAlreadyDeleted(openRequestAndCloseAsync(
+            path,
+            of(DELETE),
+            of(FILE_ATTRIBUTE_DIRECTORY),
+            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+            FILE_OPEN,
+            of(FILE_DIRECTORY_FILE),
+            setFileInformationRequest(new FileDispositionInformation(true))));
+    }
+
+    /**
+     * Asynchronous variant of {@link #rm(String)}.
+     */
+    public AFuture<Void> rmAsync(String path) {
+        return ignoreAlreadyDeleted(openRequestAndCloseAsync(
+            path,
+            of(DELETE),
+            of(FILE_ATTRIBUTE_NORMAL),
+            of(FILE_SHARE_DELETE, FILE_SHARE_WRITE, FILE_SHARE_READ),
+            FILE_OPEN,
+            of(FILE_NON_DIRECTORY_FILE),
+            setFileInformationRequest(new FileDispositionInformation(true))));
+    }
+
+    private static AFuture<Void> ignoreAlreadyDeleted(AFuture<Void> delete) {
+        final SettableFuture<Void> result = new SettableFuture<>();
+        delete.onComplete(new AFuture.Callback<Void>() {
+            @Override
+            public void onSuccess(Void value) {
+                result.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                if (t instanceof SMBApiException && ALREADY_DELETED_STATUS_HANDLER.isSuccess(((SMBApiException) t).getStatusCode())) {
+                    result.set(null);
+                } else {
+                    result.setException(t);
+                }
+            }
+        });
+        return result;
+    }
+
+    public AFuture<Void> deleteOnCloseAsync(SMB2FileId fileId) {
+        return setFileInformationAsync(fileId, new FileDispositionInformation(true));
+    }
+
     public void deleteOnClose(SMB2FileId fileId) {
         setFileInformation(fileId, new FileDispositionInformation(true));
     }
@@ -450,9 +1204,22 @@ public class DiskShare extends Share {
             accessMask.add(ACCESS_SYSTEM_SECURITY);
         }
 
-        try (DiskEntry e = open(path, accessMask, null, ALL, FILE_OPEN, null)) {
-            return e.getSecurityInformation(securityInfo);
-        }
+        final Set<SecurityInformation> requested = securityInfo;
+        return openRequestAndClose(path, accessMask, null, ALL, FILE_OPEN, null, new HandleRequest<SMB2QueryInfoResponse, SecurityDescriptor>() {
+            @Override
+            AFuture<SMB2QueryInfoResponse> addTo(CompoundRequest compound, SMB2FileId fileId) {
+                return compound.queryInfo(fileId, SMB2_0_INFO_SECURITY, requested, null, null);
+            }
+
+            @Override
+            SecurityDescriptor convert(SMB2CreateResponse createResponse, SMB2QueryInfoResponse response) {
+                try {
+                    return SecurityDescriptor.read(new SMBBuffer(response.getOutputBuffer()));
+                } catch (Buffer.BufferException e) {
+                    throw new SMBRuntimeException(e);
+                }
+            }
+        });
     }
 
     /**
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -163,10 +164,7 @@ public class File extends DiskEntry {
         if (response.getHeader().getStatusCode() == NtStatus.STATUS_END_OF_FILE.getValue()) {
             return -1;
         } else {
-            byte[] data = response.getData();
-            int bytesRead = Math.min(length, data.length);
-            System.arraycopy(data, 0, buffer, offset, bytesRead);
-            return bytesRead;
+            return response.readData(0, buffer, offset, length);
         }
     }
 
@@ -188,6 +186,37 @@ public class File extends DiskEntry {
         is.close();
     }
 
+    /**
+     * Download the complete contents of this file to the given {@link FileChannel}.
+     * <p>
+     * This method is equivalent to calling {@link #downloadTo(FileChannel, ProgressListener) downloadTo(destination, null)}.
+     *
+     * @param destination the channel to write the data to
+     * @return the number of bytes downloaded
+     * @throws IOException If the data could not be written to the destination
+     */
+    public long downloadTo(FileChannel destination) throws IOException {
+        return downloadTo(destination, null);
+    }
+
+    /**
+     * Download the complete contents of this file to the given {@link FileChannel}.
+     * <p>
+     * The file is split in ranges of the read buffer size. Up to {@link com.hierynomus.smbj.SmbConfig#getDownloadParallelism()}
+     * ranges are requested concurrently, as far as the credits of the connection allow. Each range is written to the
+     * destination at the same position as it has in this file, irrespective of the current position of the channel.
+     *
+     * @param destination      the channel to write the data to
+     * @param progressListener an optional callback that will be invoked when a range has been downloaded
+     * @return the number of bytes downloaded
+     * @throws IOException If the data could not be written to the destination
+     */
+    public long downloadTo(FileChannel destination, ProgressListener progressListener) throws IOException {
+        long fileSize = getFileInformation(FileStandardInformation.class).getEndOfFile();
+        RangedDownloader downloader = new RangedDownloader(this, share.getReadBufferSize(), share.getDownloadParallelism(), share.getReadTimeout());
+        return downloader.download(0, fileSize, destination, progressListener);
+    }
+
     /**
      * Write the data in a {@link ByteBuffer} to this file at position fileOffset.
      *
@@ -215,10 +244,7 @@ public class File extends DiskEntry {
         if (response.getHeader().getStatusCode() == NtStatus.STATUS_END_OF_FILE.getValue()) {
             return -1;
         } else {
-            byte[] data = response.getData();
-            int bytesRead = Math.min(remaining, data.length);
-            buffer.put(data, 0, bytesRead);
-            return bytesRead;
+            return response.readData(0, buffer);
         }
     }
 
@@ -399,7 +425,7 @@ public class File extends DiskEntry {
     }
 
     public InputStream getInputStream(ProgressListener listener) {
-        return new FileInputStream(this, share.getReadBufferSize(), share.getReadTimeout(), listener);
+        return new FileInputStream(this, share.getReadBufferSize(), share.getReadAheadWindow(), share.getReadTimeout(), listener);
     }
 
     @Override
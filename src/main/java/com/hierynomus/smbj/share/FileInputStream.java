@@ -26,6 +26,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -34,31 +37,33 @@ class FileInputStream extends InputStream {
     private final long readTimeout;
     private File file;
     private long offset = 0;
-    private int curr = 0;
-    private byte[] buf;
+    private ByteBuffer buf;
     private ProgressListener progressListener;
     private boolean isClosed;
-    private Future<SMB2ReadResponse> nextResponse;
+    private final Deque<PendingRead> pendingReads = new ArrayDeque<>();
+    private long nextReadOffset = 0;
 
     private static final Logger logger = LoggerFactory.getLogger(FileInputStream.class);
     private int bufferSize;
+    private final CreditWindow readAheadWindow;
 
-    FileInputStream(File file, int bufferSize, long readTimeout, ProgressListener progressListener) {
+    FileInputStream(File file, int bufferSize, int readAheadWindow, long readTimeout, ProgressListener progressListener) {
         this.file = file;
         this.bufferSize = bufferSize;
+        this.readAheadWindow = new CreditWindow(file.share, readAheadWindow, CreditWindow.creditsFor(bufferSize));
         this.progressListener = progressListener;
         this.readTimeout = readTimeout;
     }
 
     @Override
     public int read() throws IOException {
-        if (buf == null || curr >= buf.length) {
+        if (buf == null || !buf.hasRemaining()) {
             loadBuffer();
         }
         if (isClosed) {
             return -1;
         }
-        return buf[curr++] & 0xFF;
+        return buf.get() & 0xFF;
     }
 
     @Override
@@ -68,7 +73,7 @@ class FileInputStream extends InputStream {
 
     @Override
     public int read(byte b[], int off, int len) throws IOException {
-        if (buf == null || curr >= buf.length) {
+        if (buf == null || !buf.hasRemaining()) {
             loadBuffer();
         }
         if (isClosed) {
@@ -76,9 +81,8 @@ class FileInputStream extends InputStream {
         }
 
 
-        int l = buf.length - curr > len ? len : buf.length - curr;
-        System.arraycopy(buf, curr, b, off, l);
-        curr += l;
+        int l = buf.remaining() > len ? len : buf.remaining();
+        buf.get(b, off, l);
         return l;
     }
 
@@ -87,6 +91,7 @@ class FileInputStream extends InputStream {
         isClosed = true;
         file = null;
         buf = null;
+        pendingReads.clear();
     }
 
     @Override
@@ -98,12 +103,13 @@ class FileInputStream extends InputStream {
     public long skip(long n) {
         if (buf == null) {
             offset += n;
-        } else if (curr + n < buf.length) {
-            curr += n;
+            discardPendingReads();
+        } else if (n < buf.remaining()) {
+            buf.position(buf.position() + (int) n);
         } else {
-            offset += (curr + n) - buf.length;
+            offset += n - buf.remaining();
             buf = null;
-            nextResponse = null;
+            discardPendingReads();
         }
         return n;
     }
@@ -113,14 +119,13 @@ class FileInputStream extends InputStream {
             return;
         }
 
-        if (nextResponse == null) {
-            nextResponse = sendRequest();
-        }
+        fillReadAheadWindow();
 
-        SMB2ReadResponse res = Futures.get(nextResponse, readTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+        PendingRead pending = pendingReads.poll();
+        SMB2ReadResponse res = Futures.get(pending.response, readTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
         if (res.getHeader().getStatusCode() == NtStatus.STATUS_SUCCESS.getValue()) {
-            buf = res.getData();
-            curr = 0;
+            // Read straight from the received packet, no need to copy the data
+            buf = res.getDataSlice();
             offset += res.getDataLength();
             if (progressListener != null) {
                 progressListener.onProgressChanged(res.getDataLength(), offset);
@@ -133,6 +138,7 @@ class FileInputStream extends InputStream {
         if (res.getHeader().getStatusCode() == NtStatus.STATUS_END_OF_FILE.getValue() || res.getDataLength() == 0) {
             logger.debug("EOF, {} bytes read", offset);
             isClosed = true;
+            pendingReads.clear();
             return;
         }
 
@@ -140,10 +146,42 @@ class FileInputStream extends InputStream {
             throw new SMBApiException(res.getHeader(), "Read failed for " + this);
         }
 
-        nextResponse = sendRequest();
+        if (res.getDataLength() < pending.length) {
+            // A short read leaves a gap before the reads that are already in flight, re-issue them from the new offset.
+            logger.debug("Short read of {} bytes (requested {}) at offset {}", res.getDataLength(), pending.length, pending.offset);
+            discardPendingReads();
+        }
+
+        fillReadAheadWindow();
+    }
+
+    /**
+     * Send reads for the data after the pending reads, for as far as the {@link #readAheadWindow} allows.
+     */
+    private void fillReadAheadWindow() {
+        while (readAheadWindow.canSend(pendingReads.size())) {
+            pendingReads.add(new PendingRead(nextReadOffset, bufferSize, file.readAsync(nextReadOffset, bufferSize)));
+            nextReadOffset += bufferSize;
+        }
+    }
+
+    /**
+     * Drop the reads that are in flight, their responses will still arrive but are ignored.
+     */
+    private void discardPendingReads() {
+        pendingReads.clear();
+        nextReadOffset = offset;
     }
 
-    private Future<SMB2ReadResponse> sendRequest() {
-        return file.readAsync(offset, bufferSize);
+    private static class PendingRead {
+        private final long offset;
+        private final int length;
+        private final Future<SMB2ReadResponse> response;
+
+        private PendingRead(long offset, int length, Future<SMB2ReadResponse> response) {
+            this.offset = offset;
+            this.length = length;
+            this.response = response;
+        }
     }
 }
@@ -29,13 +29,22 @@ class FileOutputStream extends OutputStream {
     private ProgressListener progressListener;
     private boolean isClosed = false;
     private ByteArrayProvider provider;
+    private SMB2Writer.WriteWindow writeBehindWindow;
 
     private static final Logger logger = LoggerFactory.getLogger(FileOutputStream.class);
 
-    FileOutputStream(SMB2Writer writer, int bufferSize, long offset, ProgressListener progressListener) {
+    /**
+     * @param writeBehind if set, a full buffer is sent without waiting for the server to acknowledge it. The caller
+     *                    can refill the buffer while the previous writes are on the wire; failures of those writes are
+     *                    thrown from a subsequent {@link #write}, {@link #flush()} or {@link #close()}.
+     */
+    FileOutputStream(SMB2Writer writer, int bufferSize, long offset, ProgressListener progressListener, boolean writeBehind) {
         this.writer = writer;
         this.progressListener = progressListener;
         this.provider = new ByteArrayProvider(bufferSize,offset);
+        if (writeBehind) {
+            this.writeBehindWindow = writer.new WriteWindow(progressListener);
+        }
     }
 
     @Override
@@ -43,7 +52,7 @@ class FileOutputStream extends OutputStream {
         verifyConnectionNotClosed();
 
         if (provider.isBufferFull()) {
-            flush();
+            flushBuffer();
         }
 
         if (!provider.isBufferFull()) {
@@ -65,7 +74,7 @@ class FileOutputStream extends OutputStream {
             int writeLen = Math.min(length, provider.maxSize());
 
             while (provider.isBufferFull(writeLen)) {
-                flush();
+                flushBuffer();
             }
 
             if (!provider.isBufferFull()) {
@@ -81,13 +90,24 @@ class FileOutputStream extends OutputStream {
     @Override
     public void flush() throws IOException {
         verifyConnectionNotClosed();
+        flushBuffer();
+        if (writeBehindWindow != null) {
+            writeBehindWindow.awaitAll();
+        }
+    }
+
+    private void flushBuffer() {
         if (provider.isAvailable()) {
             sendWriteRequest();
         }
     }
 
     private void sendWriteRequest() {
-        writer.write(provider, progressListener);
+        if (writeBehindWindow != null) {
+            writeBehindWindow.writeAll(provider);
+        } else {
+            writer.write(provider, progressListener);
+        }
     }
 
     @Override
@@ -97,6 +117,14 @@ class FileOutputStream extends OutputStream {
             sendWriteRequest();
         }
 
+        if (writeBehindWindow != null) {
+            try {
+                writeBehindWindow.awaitAll();
+            } finally {
+                writeBehindWindow.discard();
+            }
+        }
+
         provider.reset();
 
         isClosed = true;
@@ -106,6 +134,10 @@ class FileOutputStream extends OutputStream {
 
     private void verifyConnectionNotClosed() throws IOException {
         if (isClosed) throw new IOException("Stream is closed");
+        if (writeBehindWindow != null) {
+            // Surface the failures of writes that completed in the meantime
+            writeBehindWindow.awaitCompleted();
+        }
     }
 
     private static class ByteArrayProvider extends ByteChunkProvider {
@@ -132,6 +164,11 @@ class FileOutputStream extends OutputStream {
             return buf.read(chunk);
         }
 
+        @Override
+        protected int getChunk(byte[] dest, int destOffset, int length) {
+            return buf.read(dest, destOffset, length);
+        }
+
         @Override
         public int bytesLeft() {
             return buf.size();
@@ -94,10 +94,7 @@ public class NamedPipe extends Open<PipeShare> {
      */
     public int read(byte[] buffer, int offset, int length) {
         SMB2ReadResponse response = share.read(fileId, 0, length);
-        byte[] data = response.getData();
-        int bytesRead = Math.min(length, data.length);
-        System.arraycopy(data, 0, buffer, offset, bytesRead);
-        return bytesRead;
+        return response.readData(0, buffer, offset, length);
     }
 
     /**
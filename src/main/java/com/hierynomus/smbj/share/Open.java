@@ -24,7 +24,9 @@ import java.util.Set;
 import com.hierynomus.mssmb2.SMB2Dialect;
 import com.hierynomus.mssmb2.SMB2FileId;
 import com.hierynomus.mssmb2.SMB2LockFlag;
+import com.hierynomus.mssmb2.messages.SMB2Close;
 import com.hierynomus.mssmb2.messages.submodule.SMB2LockElement;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.smbj.common.SmbPath;
 import com.hierynomus.smbj.share.OperationBuckets.OperationBucket;
 
@@ -92,6 +94,20 @@ public class Open<S extends Share> implements Closeable {
         share.closeFileId(fileId);
     }
 
+    /**
+     * Close this open without blocking.
+     *
+     * @return a future that completes when the server has closed the open
+     */
+    public AFuture<Void> closeAsync() {
+        return share.closeFileIdAsync(fileId).thenApply(new AFuture.Function<SMB2Close, Void>() {
+            @Override
+            public Void apply(SMB2Close response) {
+                return null;
+            }
+        });
+    }
+
     public void closeSilently() {
         try {
             close();
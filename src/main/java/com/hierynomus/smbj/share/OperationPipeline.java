@@ -0,0 +1,141 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.protocol.commons.concurrent.AFuture;
+import com.hierynomus.smbj.common.SMBRuntimeException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs asynchronous operations with several of them in flight within a {@link CreditWindow}. The operations are
+ * started and their results are handled on the thread that calls {@link #run(String)}, the asynchronous callbacks
+ * only hand the completed operations over to that thread. Handling a result may queue further operations.
+ */
+class OperationPipeline {
+    /**
+     * An operation that sends one or more requests and completes with the future returned by {@link #send()}.
+     */
+    abstract static class Operation {
+        private Throwable error;
+
+        /**
+         * Send the requests of the operation, called on the thread that runs the pipeline.
+         */
+        abstract AFuture<?> send();
+
+        /**
+         * Called on the thread that completes the future when the operation succeeded, before it is handed over.
+         */
+        void onResult(Object value) {
+        }
+
+        /**
+         * Handle the outcome of the operation, called on the thread that runs the pipeline.
+         */
+        abstract void handle();
+
+        Throwable getError() {
+            return error;
+        }
+
+        private void start(final BlockingQueue<Operation> completed) {
+            AFuture<?> future;
+            try {
+                future = send();
+            } catch (RuntimeException e) {
+                error = e;
+                completed.add(this);
+                return;
+            }
+            future.onComplete(new AFuture.Callback<Object>() {
+                @Override
+                public void onSuccess(Object value) {
+                    onResult(value);
+                    completed.add(Operation.this);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    error = t;
+                    completed.add(Operation.this);
+                }
+            });
+        }
+    }
+
+    private final CreditWindow window;
+    private final long progressTimeout;
+    private final Deque<Operation> pending = new ArrayDeque<>();
+    private final BlockingQueue<Operation> completed = new LinkedBlockingQueue<>();
+    private int inFlight;
+
+    /**
+     * @param window          bounds the number of operations in flight
+     * @param progressTimeout the time in milliseconds to wait for any of the operations in flight to complete
+     */
+    OperationPipeline(CreditWindow window, long progressTimeout) {
+        this.window = window;
+        this.progressTimeout = progressTimeout;
+    }
+
+    /**
+     * Queue an operation to be started before the operations that are already queued.
+     */
+    void addFirst(Operation operation) {
+        pending.addFirst(operation);
+    }
+
+    /**
+     * Queue an operation to be started after the operations that are already queued.
+     */
+    void addLast(Operation operation) {
+        pending.addLast(operation);
+    }
+
+    /**
+     * Run the queued operations, and the operations they queue, until none are left.
+     *
+     * @param description what the operations do, used in the error when they make no progress
+     * @throws SMBRuntimeException if none of the operations in flight completes within the progress timeout
+     */
+    void run(String description) {
+        while (!pending.isEmpty() || inFlight > 0) {
+            while (!pending.isEmpty() && window.canSend(inFlight)) {
+                pending.poll().start(completed);
+                inFlight++;
+            }
+
+            Operation operation;
+            try {
+                operation = completed.poll(progressTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SMBRuntimeException(e);
+            }
+            if (operation == null) {
+                throw new SMBRuntimeException(new TimeoutException("None of the " + inFlight + " operations " + description + " completed within " + progressTimeout + " ms"));
+            }
+            inFlight--;
+            operation.handle();
+        }
+    }
+}
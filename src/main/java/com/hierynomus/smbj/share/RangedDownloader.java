@@ -0,0 +1,136 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.mserref.NtStatus;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
+import com.hierynomus.protocol.commons.concurrent.Futures;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.smbj.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a byte range of a remote file by splitting it in read-buffer sized ranges and keeping multiple READ
+ * requests in flight. Every completed range is written to the destination {@link FileChannel} at its own position.
+ */
+class RangedDownloader {
+    private static final Logger logger = LoggerFactory.getLogger(RangedDownloader.class);
+
+    private final File file;
+    private final int rangeSize;
+    private final CreditWindow window;
+    private final long readTimeout;
+    private final Deque<Range> outstanding = new ArrayDeque<>();
+
+    RangedDownloader(File file, int rangeSize, int maxOutstanding, long readTimeout) {
+        this.file = file;
+        this.rangeSize = rangeSize;
+        this.window = new CreditWindow(file.share, maxOutstanding, CreditWindow.creditsFor(rangeSize));
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Download the range <code>[offset, offset + length)</code> of the remote file to the same positions in the
+     * destination channel.
+     *
+     * @param offset           the offset in the remote file to start downloading from
+     * @param length           the number of bytes to download
+     * @param destination      the channel to write the data to
+     * @param progressListener an optional callback that is invoked for every completed range
+     * @return the number of bytes downloaded, which is less than <code>length</code> if the end of the file was reached
+     * @throws IOException If the data could not be written to the destination
+     */
+    long download(long offset, long length, FileChannel destination, ProgressListener progressListener) throws IOException {
+        long end = offset + length;
+        long nextOffset = offset;
+        long downloaded = 0;
+        boolean eof = false;
+        try {
+            while (true) {
+                while (!eof && nextOffset < end && window.canSend(outstanding.size())) {
+                    int size = (int) Math.min(rangeSize, end - nextOffset);
+                    outstanding.add(new Range(nextOffset, size, file.readAsync(nextOffset, size)));
+                    nextOffset += size;
+                }
+
+                Range range = outstanding.poll();
+                if (range == null) {
+                    break;
+                }
+
+                SMB2ReadResponse res = Futures.get(range.response, readTimeout, TimeUnit.MILLISECONDS, TransportException.Wrapper);
+                long status = res.getHeader().getStatusCode();
+                if (status == NtStatus.STATUS_END_OF_FILE.getValue() || (status == NtStatus.STATUS_SUCCESS.getValue() && res.getDataLength() == 0)) {
+                    // The file got truncated while downloading, the ranges after this one will hit EOF as well.
+                    logger.debug("EOF at offset {} while downloading {}", range.offset, file);
+                    eof = true;
+                    continue;
+                }
+                if (status != NtStatus.STATUS_SUCCESS.getValue()) {
+                    throw new SMBApiException(res.getHeader(), "Read failed for " + file);
+                }
+
+                int dataLength = Math.min(res.getDataLength(), range.length);
+                ByteBuffer data = res.getDataSlice();
+                data.limit(dataLength);
+                writeFully(destination, data, range.offset);
+                downloaded += dataLength;
+                if (progressListener != null) {
+                    progressListener.onProgressChanged(dataLength, downloaded);
+                }
+
+                if (!eof && dataLength < range.length) {
+                    // Short read, fetch the remainder of this range before the ranges that are still in flight.
+                    long remainderOffset = range.offset + dataLength;
+                    int remainderLength = range.length - dataLength;
+                    outstanding.addFirst(new Range(remainderOffset, remainderLength, file.readAsync(remainderOffset, remainderLength)));
+                }
+            }
+        } finally {
+            outstanding.clear();
+        }
+        return downloaded;
+    }
+
+    private static void writeFully(FileChannel destination, ByteBuffer data, long position) throws IOException {
+        long pos = position;
+        while (data.hasRemaining()) {
+            pos += destination.write(data, pos);
+        }
+    }
+
+    private static class Range {
+        private final long offset;
+        private final int length;
+        private final Future<SMB2ReadResponse> response;
+
+        private Range(long offset, int length, Future<SMB2ReadResponse> response) {
+            this.offset = offset;
+            this.length = length;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.msfscc.fileinformation.FileInformation;
+import com.hierynomus.msfscc.fileinformation.FileInformationFactory;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
+import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.mssmb2.messages.SMB2QueryDirectoryRequest;
+import com.hierynomus.mssmb2.messages.SMB2QueryDirectoryResponse;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.hierynomus.msdtyp.AccessMask.FILE_LIST_DIRECTORY;
+import static com.hierynomus.msdtyp.AccessMask.FILE_READ_ATTRIBUTES;
+import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_DIRECTORY;
+import static com.hierynomus.mssmb2.SMB2CreateDisposition.FILE_OPEN;
+import static com.hierynomus.protocol.commons.EnumWithValue.EnumUtils.isSet;
+
+/**
+ * Deletes a directory tree by listing directories and deleting files concurrently, keeping multiple operations in
+ * flight in an {@link OperationPipeline}. A directory is deleted once all of its children are gone.
+ * <p>
+ * Directories are listed a page at a time: opening a directory, every QUERY_DIRECTORY page and the CLOSE are separate
+ * operations, and the entries of a page are queued for deletion as soon as the page arrives, without collecting the
+ * whole directory first. Files and empty directories are deleted in a single compounded round trip each. All
+ * requests are sent from the calling thread, so none of them waits for credits on a thread that processes responses.
+ * <p>
+ * A failure does not stop the run: the other children are still deleted, only the directories above the entry that
+ * could not be deleted are left in place.
+ */
+class RecursiveDelete {
+    private static final Logger logger = LoggerFactory.getLogger(RecursiveDelete.class);
+
+    // A delete compounds the CREATE, SET_INFO and CLOSE of a handle, the other operations send a single request
+    private static final int REQUESTS_PER_OPERATION = 3;
+
+    private static final FileInformation.Decoder<FileIdBothDirectoryInformation> DECODER =
+            FileInformationFactory.getDecoder(FileIdBothDirectoryInformation.class);
+
+    private final DiskShare share;
+    private final OperationPipeline pipeline;
+    private final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+    RecursiveDelete(DiskShare share, int maxOutstanding) {
+        this.share = share;
+        this.pipeline = new OperationPipeline(new CreditWindow(share, maxOutstanding, REQUESTS_PER_OPERATION),
+                REQUESTS_PER_OPERATION * share.getTransactTimeout());
+    }
+
+    /**
+     * Delete the directory and everything below it.
+     *
+     * @param path the directory to delete, relative to the share
+     * @return the paths that could not be deleted or listed, with the reason why, in the order the failures occurred
+     */
+    Map<String, Throwable> delete(String path) {
+        pipeline.addLast(new OpenDirectory(new Node(path, null)));
+        pipeline.run("deleting " + path);
+        return failures;
+    }
+
+    private void failed(String path, Throwable error) {
+        logger.debug("Could not delete {}: {}", path, error.getMessage());
+        // Keep the first failure of a path, e.g. when closing a directory fails after listing it failed
+        if (!failures.containsKey(path)) {
+            failures.put(path, error);
+        }
+    }
+
+    /**
+     * A child of the directory is gone, or could not be deleted. Delete the directory once all of its children are
+     * done, unless one of them could not be deleted, in which case the directory is not empty either.
+     */
+    private void childDone(Node directory, boolean childFailed) {
+        if (directory == null) {
+            return;
+        }
+        directory.remaining--;
+        directory.failed |= childFailed;
+        deleteIfEmpty(directory);
+    }
+
+    private void deleteIfEmpty(Node directory) {
+        if (!directory.listed || directory.remaining > 0) {
+            return;
+        }
+        if (directory.failed) {
+            childDone(directory.parent, true);
+        } else {
+            pipeline.addFirst(new DeleteDirectory(directory));
+        }
+    }
+
+    private static boolean isAlreadyDeleted(Throwable error) {
+        return error instanceof SMBApiException
+            && DiskShare.ALREADY_DELETED_STATUS_HANDLER.isSuccess(((SMBApiException) error).getStatusCode());
+    }
+
+    private static class Node {
+        private final String path;
+        private final Node parent;
+        private int remaining;
+        private boolean listed;
+        private boolean failed;
+
+        private Node(String path, Node parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+
+    private class OpenDirectory extends OperationPipeline.Operation {
+        private final Node directory;
+        private Directory handle;
+
+        private OpenDirectory(Node directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        AFuture<?> send() {
+            return share.openDirectoryAsync(directory.path, EnumSet.of(FILE_LIST_DIRECTORY, FILE_READ_ATTRIBUTES), null,
+                    SMB2ShareAccess.ALL, FILE_OPEN, null);
+        }
+
+        @Override
+        void onResult(Object value) {
+            handle = (Directory) value;
+        }
+
+        @Override
+        void handle() {
+            if (getError() != null) {
+                if (isAlreadyDeleted(getError())) {
+                    childDone(directory.parent, false);
+                } else {
+                    failed(directory.path, getError());
+                    childDone(directory.parent, true);
+                }
+                return;
+            }
+            pipeline.addFirst(new QueryDirectoryPage(directory, handle, null));
+        }
+    }
+
+    private class QueryDirectoryPage extends OperationPipeline.Operation {
+        private final Node directory;
+        private final Directory handle;
+        private final byte[] previousBuffer;
+        private SMB2QueryDirectoryResponse response;
+
+        private QueryDirectoryPage(Node directory, Directory handle, byte[] previousBuffer) {
+            this.directory = directory;
+            this.handle = handle;
+            this.previousBuffer = previousBuffer;
+        }
+
+        @Override
+        AFuture<?> send() {
+            EnumSet<SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags> flags;
+            if (previousBuffer == null) {
+                flags = EnumSet.of(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.SMB2_RESTART_SCANS);
+            } else {
+                flags = EnumSet.noneOf(SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags.class);
+            }
+            return handle.share.queryDirectoryAsync(handle.getFileId(), flags, DECODER.getInformationClass(), null);
+        }
+
+        @Override
+        void onResult(Object value) {
+            response = (SMB2QueryDirectoryResponse) value;
+        }
+
+        @Override
+        void handle() {
+            if (getError() != null) {
+                listingFailed(getError());
+                return;
+            }
+            if (Directory.isEndOfListing(response, previousBuffer)) {
+                pipeline.addFirst(new CloseDirectory(directory, handle));
+                return;
+            }
+
+            byte[] buffer = response.getOutputBuffer();
+            Iterator<FileIdBothDirectoryInformation> entries;
+            try {
+                entries = FileInformationFactory.createFileInformationIterator(buffer, DECODER);
+            } catch (RuntimeException e) {
+                listingFailed(e);
+                return;
+            }
+            // The deletes of the entries on this page are queued in front of the next page
+            pipeline.addFirst(new QueryDirectoryPage(directory, handle, buffer));
+            while (entries.hasNext()) {
+                FileIdBothDirectoryInformation entry = entries.next();
+                String name = entry.getFileName();
+                if (".".equals(name) || "..".equals(name)) {
+                    continue;
+                }
+                String path = directory.path + "\\" + name;
+                directory.remaining++;
+                if (isSet(entry.getFileAttributes(), FILE_ATTRIBUTE_DIRECTORY)) {
+                    pipeline.addLast(new OpenDirectory(new Node(path, directory)));
+                } else {
+                    // Deletes go first, so that the number of known but not yet deleted entries stays small.
+                    pipeline.addFirst(new DeleteFile(path, directory));
+                }
+            }
+        }
+
+        private void listingFailed(Throwable error) {
+            failed(directory.path, error);
+            directory.failed = true;
+            pipeline.addFirst(new CloseDirectory(directory, handle));
+        }
+    }
+
+    private class CloseDirectory extends OperationPipeline.Operation {
+        private final Node directory;
+        private final Directory handle;
+
+        private CloseDirectory(Node directory, Directory handle) {
+            this.directory = directory;
+            this.handle = handle;
+        }
+
+        @Override
+        AFuture<?> send() {
+            return handle.closeAsync();
+        }
+
+        @Override
+        void handle() {
+            if (getError() != null) {
+                failed(directory.path, getError());
+                directory.failed = true;
+            }
+            directory.listed = true;
+            deleteIfEmpty(directory);
+        }
+    }
+
+    private class DeleteFile extends OperationPipeline.Operation {
+        private final String path;
+        private final Node directory;
+
+        private DeleteFile(String path, Node directory) {
+            this.path = path;
+            this.directory = directory;
+        }
+
+        @Override
+        AFuture<?> send() {
+            return share.rmAsync(path);
+        }
+
+        @Override
+        void handle() {
+            if (getError() != null) {
+                failed(path, getError());
+            }
+            childDone(directory, getError() != null);
+        }
+    }
+
+    private class DeleteDirectory extends OperationPipeline.Operation {
+        private final Node directory;
+
+        private DeleteDirectory(Node directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        AFuture<?> send() {
+            return share.rmdirAsync(directory.path);
+        }
+
+        @Override
+        void handle() {
+            if (getError() != null) {
+                failed(directory.path, getError());
+            }
+            childDone(directory.parent, getError() != null);
+        }
+    }
+}
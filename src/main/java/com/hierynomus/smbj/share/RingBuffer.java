@@ -46,20 +46,24 @@ class RingBuffer {
     }
 
     public int read(byte[] chunk) {
-        int len = size < chunk.length ? size : chunk.length;
-        readBytes(chunk, len);
+        return read(chunk, 0, chunk.length);
+    }
+
+    public int read(byte[] chunk, int off, int maxLen) {
+        int len = size < maxLen ? size : maxLen;
+        readBytes(chunk, off, len);
         readIndex = (readIndex + len) % buf.length;
         size -= len;
         return len;
     }
 
-    private void readBytes(byte[] chunk, int len) {
+    private void readBytes(byte[] chunk, int off, int len) {
         if (readIndex + len <= buf.length) {
-            System.arraycopy(buf, readIndex, chunk, 0, len);
+            System.arraycopy(buf, readIndex, chunk, off, len);
         } else {
             int bytesToEnd = buf.length - readIndex;
-            System.arraycopy(buf, readIndex, chunk, 0, bytesToEnd);
-            System.arraycopy(buf, 0, chunk, bytesToEnd, len - bytesToEnd);
+            System.arraycopy(buf, readIndex, chunk, off, bytesToEnd);
+            System.arraycopy(buf, 0, chunk, off + bytesToEnd, len - bytesToEnd);
         }
     }
 
@@ -27,6 +27,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.concurrent.Future;
@@ -90,6 +92,10 @@ public class SMB2Writer {
      * Write all available data from the byte chunk provider to this file. The
      * offset in the file to which data is written is determined by
      * {@link ByteChunkProvider#getOffset()}.
+     * <p>
+     * Writes are pipelined: up to {@link com.hierynomus.smbj.SmbConfig#getWriteWindowSize()} bytes are kept in flight,
+     * see {@link CreditWindow}. Responses are processed in order and the first failed or
+     * partial write aborts the operation.
      *
      * @param provider         the byte chunk provider
      * @param progressListener an optional callback that will be invoked when data
@@ -97,15 +103,15 @@ public class SMB2Writer {
      * @return the actual number of bytes that was written to the file
      */
     public long write(ByteChunkProvider provider, ProgressListener progressListener) {
-        int bytesWritten = 0;
-        while (provider.isAvailable()) {
-            logger.debug("Writing to {} from offset {}", this.entryName, provider.getOffset());
-            SMB2WriteResponse wresp = share.write(fileId, provider);
-            bytesWritten += wresp.getBytesWritten();
-            if (progressListener != null)
-                progressListener.onProgressChanged(wresp.getBytesWritten(), provider.getOffset());
+        WriteWindow window = new WriteWindow(progressListener);
+        try {
+            window.writeAll(provider);
+            window.awaitAll();
+        } finally {
+            // On failure the responses of the writes that are still in flight are not awaited
+            window.discard();
         }
-        return bytesWritten;
+        return window.getBytesWritten();
     }
 
     /***
@@ -168,6 +174,94 @@ public class SMB2Writer {
     }
 
     public OutputStream getOutputStream(ProgressListener listener, long offset) {
-        return new FileOutputStream(this, share.getWriteBufferSize(), offset, listener);
+        return new FileOutputStream(this, share.getWriteBufferSize(), offset, listener, share.isWriteBehind());
+    }
+
+    /**
+     * A bounded window of WRITE requests that are in flight. The window holds at most
+     * {@link com.hierynomus.smbj.SmbConfig#getWriteWindowSize()} bytes worth of full writes, bounded by the credits of the
+     * connection. Responses are awaited in the order the writes were sent.
+     */
+    class WriteWindow {
+        private final ProgressListener progressListener;
+        private final Deque<PendingWrite> inFlight = new ArrayDeque<>();
+        private final CreditWindow window;
+        private long bytesWritten;
+
+        WriteWindow(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+            int writeBufferSize = share.getWriteBufferSize();
+            this.window = new CreditWindow(share, Math.max(1, share.getWriteWindowSize() / writeBufferSize), CreditWindow.creditsFor(writeBufferSize));
+        }
+
+        /**
+         * Send all available data from the provider, waiting for the oldest writes to complete whenever the window
+         * is full. The writes that are sent last may still be in flight when this method returns.
+         */
+        void writeAll(ByteChunkProvider provider) {
+            while (provider.isAvailable()) {
+                if (!window.canSend(inFlight.size())) {
+                    awaitOldest();
+                    continue;
+                }
+                logger.debug("Writing to {} from offset {}", entryName, provider.getOffset());
+                Future<SMB2WriteResponse> resp = share.writeAsync(fileId, provider);
+                PendingWrite write = new PendingWrite(resp, provider.getLastWriteSize(), provider.getOffset());
+                inFlight.add(write);
+            }
+        }
+
+        /**
+         * Process the responses of the writes that have already completed, without blocking.
+         */
+        void awaitCompleted() {
+            while (!inFlight.isEmpty() && inFlight.peek().response.isDone()) {
+                awaitOldest();
+            }
+        }
+
+        /**
+         * Wait for all writes in flight to complete.
+         */
+        void awaitAll() {
+            while (!inFlight.isEmpty()) {
+                awaitOldest();
+            }
+        }
+
+        /**
+         * Forget the writes that are still in flight, their responses will not be checked.
+         */
+        void discard() {
+            inFlight.clear();
+        }
+
+        long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        private void awaitOldest() {
+            PendingWrite write = inFlight.poll();
+            SMB2WriteResponse wresp = share.receive(write.response, "Write", fileId, StatusHandler.SUCCESS, share.getWriteTimeout());
+            if (wresp.getBytesWritten() != write.length) {
+                throw new SMBRuntimeException("Possible remote file corruption detected, server wrote less bytes ("
+                        + wresp.getBytesWritten() + ") than we sent (" + write.length + ") to " + entryName + ".");
+            }
+            bytesWritten += wresp.getBytesWritten();
+            if (progressListener != null)
+                progressListener.onProgressChanged(wresp.getBytesWritten(), write.endOffset);
+        }
+    }
+
+    private static class PendingWrite {
+        private final Future<SMB2WriteResponse> response;
+        private final int length;
+        private final long endOffset;
+
+        private PendingWrite(Future<SMB2WriteResponse> response, int length, long endOffset) {
+            this.response = response;
+            this.length = length;
+            this.endOffset = endOffset;
+        }
     }
 }
@@ -24,6 +24,7 @@ import com.hierynomus.msfscc.FileSystemInformationClass;
 import com.hierynomus.mssmb2.*;
 import com.hierynomus.mssmb2.messages.*;
 import com.hierynomus.mssmb2.messages.submodule.SMB2LockElement;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
 import com.hierynomus.protocol.commons.concurrent.Futures;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.smbj.SmbConfig;
@@ -38,8 +39,11 @@ import com.hierynomus.smbj.session.Session;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Share implements AutoCloseable {
@@ -64,14 +68,14 @@ public class Share implements AutoCloseable {
                     || statusCode == NtStatus.STATUS_NO_SUCH_FILE.getValue();
         }
     };
-    private static final StatusHandler SUCCESS_OR_EOF = new StatusHandler() {
+    static final StatusHandler SUCCESS_OR_EOF = new StatusHandler() {
         @Override
         public boolean isSuccess(long statusCode) {
             return statusCode == NtStatus.STATUS_SUCCESS.getValue()
                     || statusCode == NtStatus.STATUS_END_OF_FILE.getValue();
         }
     };
-    private static final StatusHandler SUCCESS_OR_CLOSED = new StatusHandler() {
+    static final StatusHandler SUCCESS_OR_CLOSED = new StatusHandler() {
         @Override
         public boolean isSuccess(long statusCode) {
             return statusCode == NtStatus.STATUS_SUCCESS.getValue()
@@ -86,8 +90,13 @@ public class Share implements AutoCloseable {
     private final SMB2Dialect dialect;
     private final int readBufferSize;
     private final long readTimeout;
+    private final int readAheadWindow;
+    private final int downloadParallelism;
     private final int writeBufferSize;
     private final long writeTimeout;
+    private final int writeWindowSize;
+    private final boolean writeBehind;
+    private final boolean compoundRequests;
     private final int transactBufferSize;
     private final long transactTimeout;
     private final long sessionId;
@@ -102,8 +111,13 @@ public class Share implements AutoCloseable {
         SmbConfig config = treeConnect.getConfig();
         readBufferSize = Math.min(config.getReadBufferSize(), negotiatedProtocol.getMaxReadSize());
         readTimeout = config.getReadTimeout();
+        readAheadWindow = config.getReadAheadWindow();
+        downloadParallelism = config.getDownloadParallelism();
         writeBufferSize = Math.min(config.getWriteBufferSize(), negotiatedProtocol.getMaxWriteSize());
         writeTimeout = config.getWriteTimeout();
+        writeWindowSize = config.getWriteWindowSize();
+        writeBehind = config.isWriteBehind();
+        compoundRequests = config.isCompoundRequests();
         transactBufferSize = Math.min(config.getTransactBufferSize(), negotiatedProtocol.getMaxTransactSize());
         transactTimeout = config.getTransactTimeout();
         sessionId = session.getSessionId();
@@ -137,10 +151,49 @@ public class Share implements AutoCloseable {
         return readTimeout;
     }
 
+    int getReadAheadWindow() {
+        return readAheadWindow;
+    }
+
+    int getDownloadParallelism() {
+        return downloadParallelism;
+    }
+
     int getWriteBufferSize() {
         return writeBufferSize;
     }
 
+    long getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    int getWriteWindowSize() {
+        return writeWindowSize;
+    }
+
+    long getTransactTimeout() {
+        return transactTimeout;
+    }
+
+    boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    boolean isCompoundRequests() {
+        return compoundRequests;
+    }
+
+    int getAvailableCredits() {
+        return session.getConnection().getAvailableCredits();
+    }
+
+    /**
+     * The executor for callbacks that send the next request, which must not run on a response processing thread.
+     */
+    Executor getContinuationExecutor() {
+        return session.getConnection().getContinuationExecutor();
+    }
+
     SMB2FileId openFileId(SmbPath path, SMB2ImpersonationLevel impersonationLevel, Set<AccessMask> accessMask,
             Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess,
             SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
@@ -157,6 +210,14 @@ public class Share implements AutoCloseable {
         return resp;
     }
 
+    AFuture<SMB2CreateResponse> createFileAsync(SmbPath path, SMB2ImpersonationLevel impersonationLevel,
+            Set<AccessMask> accessMask, Set<FileAttributes> fileAttributes, Set<SMB2ShareAccess> shareAccess,
+            SMB2CreateDisposition createDisposition, Set<SMB2CreateOptions> createOptions) {
+        SMB2CreateRequest cr = new SMB2CreateRequest(dialect, sessionId, treeId, impersonationLevel, accessMask,
+                fileAttributes, shareAccess, createDisposition, createOptions, path);
+        return sendAsync(cr, "Create", path, getCreateStatusHandler());
+    }
+
     protected StatusHandler getCreateStatusHandler() {
         return SUCCESS_OR_SYMLINK;
     }
@@ -171,19 +232,48 @@ public class Share implements AutoCloseable {
         sendReceive(closeReq, "Close", fileId, SUCCESS_OR_CLOSED, transactTimeout);
     }
 
+    AFuture<SMB2Close> closeFileIdAsync(SMB2FileId fileId) {
+        SMB2Close closeReq = new SMB2Close(dialect, sessionId, treeId, fileId);
+        return sendAsync(closeReq, "Close", fileId, SUCCESS_OR_CLOSED);
+    }
+
     Future<SMB2Close> closeFileIdNoWait(SMB2FileId fileId) throws SMBApiException {
         SMB2Close closeReq = new SMB2Close(dialect, sessionId, treeId, fileId);
         return send(closeReq);
     }
 
+    /**
+     * The largest response to accept for a QUERY_INFO. Security descriptors, extended attributes and quotas can be
+     * larger than a single credit allows and may use the transact buffer size. The other information classes fit in
+     * a single credit, so that their queries are charged a single credit.
+     */
+    int getMaxQueryInfoOutputLength(SMB2QueryInfoRequest.SMB2QueryInfoType infoType, FileInformationClass fileInformationClass) {
+        if (infoType == SMB2QueryInfoRequest.SMB2QueryInfoType.SMB2_0_INFO_SECURITY
+                || infoType == SMB2QueryInfoRequest.SMB2QueryInfoType.SMB2_0_INFO_QUOTA
+                || fileInformationClass == FileInformationClass.FileFullEaInformation) {
+            return transactBufferSize;
+        }
+        return Math.min(SMB2Packet.SINGLE_CREDIT_PAYLOAD_SIZE, transactBufferSize);
+    }
+
     SMB2QueryInfoResponse queryInfo(SMB2FileId fileId, SMB2QueryInfoRequest.SMB2QueryInfoType infoType,
             Set<SecurityInformation> securityInfo, FileInformationClass fileInformationClass,
             FileSystemInformationClass fileSystemInformationClass) {
         SMB2QueryInfoRequest qreq = new SMB2QueryInfoRequest(dialect, sessionId, treeId, fileId, infoType,
-                fileInformationClass, fileSystemInformationClass, null, securityInfo);
+                fileInformationClass, fileSystemInformationClass, null, securityInfo,
+                getMaxQueryInfoOutputLength(infoType, fileInformationClass));
         return sendReceive(qreq, "QueryInfo", fileId, StatusHandler.SUCCESS, transactTimeout);
     }
 
+    AFuture<SMB2QueryInfoResponse> queryInfoAsync(SMB2FileId fileId,
+            SMB2QueryInfoRequest.SMB2QueryInfoType infoType, Set<SecurityInformation> securityInfo,
+            FileInformationClass fileInformationClass, FileSystemInformationClass fileSystemInformationClass) {
+        SMB2QueryInfoRequest qreq = new SMB2QueryInfoRequest(dialect, sessionId, treeId, fileId, infoType,
+                fileInformationClass, fileSystemInformationClass, null, securityInfo,
+                getMaxQueryInfoOutputLength(infoType, fileInformationClass));
+        return sendAsync(qreq, "QueryInfo", fileId, StatusHandler.SUCCESS);
+    }
+
     void setInfo(SMB2FileId fileId, SMB2SetInfoRequest.SMB2InfoType infoType, Set<SecurityInformation> securityInfo,
             FileInformationClass fileInformationClass, byte[] buffer) {
         SMB2SetInfoRequest qreq = new SMB2SetInfoRequest(dialect, sessionId, treeId, infoType, fileId,
@@ -191,6 +281,13 @@ public class Share implements AutoCloseable {
         sendReceive(qreq, "SetInfo", fileId, StatusHandler.SUCCESS, transactTimeout);
     }
 
+    AFuture<SMB2SetInfoResponse> setInfoAsync(SMB2FileId fileId, SMB2SetInfoRequest.SMB2InfoType infoType,
+            Set<SecurityInformation> securityInfo, FileInformationClass fileInformationClass, byte[] buffer) {
+        SMB2SetInfoRequest qreq = new SMB2SetInfoRequest(dialect, sessionId, treeId, infoType, fileId,
+                fileInformationClass, securityInfo, buffer);
+        return sendAsync(qreq, "SetInfo", fileId, StatusHandler.SUCCESS);
+    }
+
     SMB2QueryDirectoryResponse queryDirectory(SMB2FileId fileId,
             Set<SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags> flags, FileInformationClass informationClass,
             String searchPattern) {
@@ -200,6 +297,14 @@ public class Share implements AutoCloseable {
         return sendReceive(qdr, "Query directory", fileId, SUCCESS_OR_NO_MORE_FILES_OR_NO_SUCH_FILE, transactTimeout);
     }
 
+    AFuture<SMB2QueryDirectoryResponse> queryDirectoryAsync(SMB2FileId fileId,
+            Set<SMB2QueryDirectoryRequest.SMB2QueryDirectoryFlags> flags, FileInformationClass informationClass,
+            String searchPattern) {
+        SMB2QueryDirectoryRequest qdr = new SMB2QueryDirectoryRequest(dialect, sessionId, treeId, fileId,
+                informationClass, flags, 0, searchPattern, transactBufferSize);
+        return sendAsync(qdr, "Query directory", fileId, SUCCESS_OR_NO_MORE_FILES_OR_NO_SUCH_FILE);
+    }
+
     SMB2WriteResponse write(SMB2FileId fileId, ByteChunkProvider provider) {
         return receive(writeAsync(fileId, provider), "Write", fileId, StatusHandler.SUCCESS, writeTimeout);
     }
@@ -359,7 +464,46 @@ public class Share implements AutoCloseable {
         return receive(fut, name, target, statusHandler, timeout);
     }
 
-    private <T extends SMB2Packet> Future<T> send(SMB2Packet request) {
+    /**
+     * Send a request without waiting for its response. The returned future fails with an {@link SMBApiException} if
+     * the response status is not accepted by the status handler. Errors while sending the request are reported through
+     * the returned future as well, so that asynchronous callers only need to handle them in one place.
+     */
+    <T extends SMB2Packet> AFuture<T> sendAsync(SMB2Packet request, final String name, final Object target,
+            final StatusHandler statusHandler) {
+        AFuture<T> fut;
+        try {
+            fut = send(request);
+        } catch (SMBRuntimeException e) {
+            return Futures.failed(e);
+        }
+        return verifyStatus(fut, name, target, statusHandler);
+    }
+
+    static <T extends SMB2Packet> AFuture<T> verifyStatus(AFuture<T> fut, final String name, final Object target,
+            final StatusHandler statusHandler) {
+        return fut.thenApply(new AFuture.Function<T, T>() {
+            @Override
+            public T apply(T resp) {
+                long status = resp.getHeader().getStatusCode();
+                if (!statusHandler.isSuccess(status)) {
+                    throw new SMBApiException(resp.getHeader(), name + " failed for " + target);
+                }
+                return resp;
+            }
+        });
+    }
+
+    /**
+     * Start building a chain of requests that is sent to the server in a single round trip.
+     *
+     * @return a new, empty compound request on this share
+     */
+    public CompoundRequest compound() {
+        return new CompoundRequest(this, dialect, sessionId, treeId, readBufferSize);
+    }
+
+    private <T extends SMB2Packet> AFuture<T> send(SMB2Packet request) {
         if (!isConnected()) {
             throw new SMBRuntimeException(getClass().getSimpleName() + " has already been closed");
         }
@@ -396,6 +540,26 @@ public class Share implements AutoCloseable {
         return resp;
     }
 
+    /**
+     * Wait for a future that verifies the response status itself, such as the futures of {@link #sendAsync} and of a
+     * {@link CompoundRequest}, rethrowing the {@link SMBApiException} it failed with.
+     */
+    <T> T await(Future<T> fut, long timeout) {
+        try {
+            if (timeout > 0) {
+                return fut.get(timeout, TimeUnit.MILLISECONDS);
+            }
+            return fut.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SMBRuntimeException(e);
+        } catch (ExecutionException e) {
+            throw SMBRuntimeException.Wrapper.wrap(e.getCause());
+        } catch (TimeoutException e) {
+            throw new SMBRuntimeException(new TransportException(e));
+        }
+    }
+
     SMB2Dialect getDialect() {
         return dialect;
     }
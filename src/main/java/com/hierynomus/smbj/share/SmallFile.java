@@ -0,0 +1,88 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msdtyp.FileTime;
+import com.hierynomus.msfscc.FileAttributes;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+
+import java.util.Set;
+
+/**
+ * The contents of a small file together with the metadata the server returned when the file was opened, as read by
+ * {@link DiskShare#readSmallFile(String, int)}.
+ */
+public class SmallFile {
+    private final byte[] data;
+    private final FileTime creationTime;
+    private final FileTime lastAccessTime;
+    private final FileTime lastWriteTime;
+    private final FileTime changeTime;
+    private final long allocationSize;
+    private final long endOfFile;
+    private final Set<FileAttributes> fileAttributes;
+
+    SmallFile(SMB2CreateResponse createResponse, byte[] data) {
+        this.data = data;
+        this.creationTime = createResponse.getCreationTime();
+        this.lastAccessTime = createResponse.getLastAccessTime();
+        this.lastWriteTime = createResponse.getLastWriteTime();
+        this.changeTime = createResponse.getChangeTime();
+        this.allocationSize = createResponse.getAllocationSize();
+        this.endOfFile = createResponse.getEndOfFile();
+        this.fileAttributes = createResponse.getFileAttributes();
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return whether the data contains the whole file, which is not the case if the file is larger than the number
+     *         of bytes that was asked for.
+     */
+    public boolean isComplete() {
+        return data.length >= endOfFile;
+    }
+
+    public FileTime getCreationTime() {
+        return creationTime;
+    }
+
+    public FileTime getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public FileTime getLastWriteTime() {
+        return lastWriteTime;
+    }
+
+    public FileTime getChangeTime() {
+        return changeTime;
+    }
+
+    public long getAllocationSize() {
+        return allocationSize;
+    }
+
+    public long getEndOfFile() {
+        return endOfFile;
+    }
+
+    public Set<FileAttributes> getFileAttributes() {
+        return fileAttributes;
+    }
+}
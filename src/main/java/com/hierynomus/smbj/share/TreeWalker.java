@@ -0,0 +1,186 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.share;
+
+import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.protocol.commons.concurrent.AFuture;
+
+import java.util.List;
+
+import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_DIRECTORY;
+import static com.hierynomus.msfscc.FileAttributes.FILE_ATTRIBUTE_REPARSE_POINT;
+import static com.hierynomus.protocol.commons.EnumWithValue.EnumUtils.isSet;
+
+/**
+ * Walks a directory tree on a {@link DiskShare}, listing several directories at the same time.
+ * <p>
+ * The directories are listed asynchronously, with at most {@link #withParallelism(int) parallelism} listings in
+ * flight, as far as the credits of the connection allow. The {@link Visitor} is only called from the thread that calls {@link #walk(Visitor)}, so it does not need
+ * to be thread-safe. Entries are visited in the order in which the directory listings complete, not in tree order.
+ * Directories that are reparse points (symbolic links, junctions) are visited but not descended into.
+ */
+public class TreeWalker {
+    private static final int DEFAULT_PARALLELISM = 16;
+
+    // A listing opens the directory, queries it and closes it again
+    private static final int REQUESTS_PER_LISTING = 3;
+
+    /**
+     * Receives the entries of the walked tree.
+     */
+    public interface Visitor {
+        /**
+         * @param path  the path of the entry, relative to the share
+         * @param entry the directory entry
+         */
+        void visit(String path, FileIdBothDirectoryInformation entry);
+
+        /**
+         * Called when a directory could not be listed. The walk continues with the other directories.
+         *
+         * @param path  the path of the directory, relative to the share
+         * @param error the reason the directory could not be listed
+         */
+        void visitFailed(String path, Throwable error);
+    }
+
+    /**
+     * Selects entries of the walked tree.
+     */
+    public interface Filter {
+        boolean accept(String path, FileIdBothDirectoryInformation entry);
+    }
+
+    private final DiskShare share;
+    private final String root;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxDepth = -1;
+    private Filter include;
+    private Filter descend;
+
+    TreeWalker(DiskShare share, String root) {
+        this.share = share;
+        this.root = root;
+    }
+
+    /**
+     * @param parallelism the maximum number of directories that are listed at the same time
+     */
+    public TreeWalker withParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive, was " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param maxDepth the number of directory levels to list, where 1 only lists the root directory, or a negative
+     *                 value to walk the whole tree
+     */
+    public TreeWalker withMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param include only entries accepted by this filter are passed to the visitor. Directories that are not
+     *                included are still descended into.
+     */
+    public TreeWalker withInclude(Filter include) {
+        this.include = include;
+        return this;
+    }
+
+    /**
+     * @param descend only directories accepted by this filter are descended into, which can be used to exclude
+     *                whole subtrees.
+     */
+    public TreeWalker withDescend(Filter descend) {
+        this.descend = descend;
+        return this;
+    }
+
+    /**
+     * Walk the tree, blocking until all directories have been listed and all entries have been visited.
+     *
+     * @throws com.hierynomus.smbj.common.SMBRuntimeException if none of the listings in flight completes within a
+     *                                                        multiple of the transact timeout
+     */
+    public void walk(Visitor visitor) {
+        OperationPipeline pipeline = new OperationPipeline(new CreditWindow(share, parallelism, REQUESTS_PER_LISTING),
+                REQUESTS_PER_LISTING * share.getTransactTimeout());
+        pipeline.addLast(new Listing(pipeline, visitor, root, 1));
+        pipeline.run("walking " + root);
+    }
+
+    private boolean shouldDescend(int depth, String path, FileIdBothDirectoryInformation entry) {
+        if (!isSet(entry.getFileAttributes(), FILE_ATTRIBUTE_DIRECTORY) || isSet(entry.getFileAttributes(), FILE_ATTRIBUTE_REPARSE_POINT)) {
+            return false;
+        }
+        if (maxDepth >= 0 && depth >= maxDepth) {
+            return false;
+        }
+        return descend == null || descend.accept(path, entry);
+    }
+
+    private class Listing extends OperationPipeline.Operation {
+        private final OperationPipeline pipeline;
+        private final Visitor visitor;
+        private final String path;
+        private final int depth;
+        private List<FileIdBothDirectoryInformation> entries;
+
+        private Listing(OperationPipeline pipeline, Visitor visitor, String path, int depth) {
+            this.pipeline = pipeline;
+            this.visitor = visitor;
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        AFuture<?> send() {
+            return share.listAsync(path);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void onResult(Object value) {
+            entries = (List<FileIdBothDirectoryInformation>) value;
+        }
+
+        @Override
+        void handle() {
+            if (getError() != null) {
+                visitor.visitFailed(path, getError());
+                return;
+            }
+            for (FileIdBothDirectoryInformation entry : entries) {
+                String name = entry.getFileName();
+                if (".".equals(name) || "..".equals(name)) {
+                    continue;
+                }
+                String entryPath = path.isEmpty() ? name : path + "\\" + name;
+                if (include == null || include.accept(entryPath, entry)) {
+                    visitor.visit(entryPath, entry);
+                }
+                if (shouldDescend(depth, entryPath, entry)) {
+                    pipeline.addLast(new Listing(pipeline, visitor, entryPath, depth + 1));
+                }
+            }
+        }
+    }
+}
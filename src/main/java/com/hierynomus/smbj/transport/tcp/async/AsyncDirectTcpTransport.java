@@ -18,11 +18,9 @@ package com.hierynomus.smbj.transport.tcp.async;
 import com.hierynomus.protocol.Packet;
 import com.hierynomus.protocol.PacketData;
 import com.hierynomus.protocol.commons.buffer.Buffer;
-import com.hierynomus.protocol.commons.buffer.Buffer.BufferException;
 import com.hierynomus.protocol.transport.PacketHandlers;
 import com.hierynomus.protocol.transport.TransportException;
 import com.hierynomus.protocol.transport.TransportLayer;
-import com.hierynomus.smbj.common.SMBRuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +32,7 @@ import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -44,6 +43,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> implements TransportLayer<P> {
     private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
     private static final int DIRECT_HEADER_SIZE = 4;
+    private static final int MAX_GATHERED_PACKETS = 64;
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final PacketHandlers<D, P> handlers;
@@ -52,8 +52,9 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
     private final AtomicBoolean connected;
     private int soTimeout = 0;
 
-    // AsynchronousSocketChannel doesn't support concurrent writes, so queue pending writes for later
-    private final Queue<ByteBuffer> writeQueue;
+    // AsynchronousSocketChannel doesn't support concurrent writes, so queue pending writes for later.
+    // Guarded by this, all queued packets are sent with a single gathering write when the channel is free.
+    private final Queue<PendingWrite> writeQueue;
     private AtomicBoolean writingNow;
 
     public AsyncDirectTcpTransport(int soTimeout, PacketHandlers<D, P> handlers, AsynchronousChannelGroup group)
@@ -63,21 +64,21 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
         this.socketChannel = AsynchronousSocketChannel.open(group);
         this.packetReader = new AsyncPacketReader<>(this.socketChannel, handlers.getPacketFactory(),
             handlers.getReceiver());
-        this.writeQueue = new LinkedBlockingQueue<>();
+        this.writeQueue = new ArrayDeque<>();
         this.connected = new AtomicBoolean(false);
         this.writingNow = new AtomicBoolean(false);
     }
 
     @Override
     public void write(P packet) throws TransportException {
-        ByteBuffer bufferToSend = prepareBufferToSend(packet); // Serialize first, as it might throw
+        PendingWrite pendingWrite = prepareBufferToSend(packet); // Serialize first, as it might throw
         logger.trace("Sending packet << {} >>", packet);
-        writeOrEnqueue(bufferToSend);
+        writeOrEnqueue(pendingWrite);
     }
 
-    private void writeOrEnqueue(ByteBuffer buffer) {
+    private void writeOrEnqueue(PendingWrite pendingWrite) {
         synchronized (this) {
-            writeQueue.add(buffer);
+            writeQueue.add(pendingWrite);
             if (!writingNow.getAndSet(true)) {
                 startAsyncWrite();
             }
@@ -120,11 +121,11 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
         if (!isConnected()) {
             throw new IllegalStateException("Transport is not connected");
         }
-        ByteBuffer toSend = writeQueue.peek();
-        socketChannel.write(toSend, soTimeout, TimeUnit.MILLISECONDS, null, new CompletionHandler<Integer, Object>() {
+        ByteBuffer[] toSend = gatherPendingWrites();
+        socketChannel.write(toSend, 0, toSend.length, soTimeout, TimeUnit.MILLISECONDS, null, new CompletionHandler<Long, Object>() {
 
             @Override
-            public void completed(Integer result, Object attachment) {
+            public void completed(Long result, Object attachment) {
                 logger.trace("Written {} bytes to async transport", result);
                 startNextWriteIfWaiting();
             }
@@ -144,12 +145,9 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
 
             private void startNextWriteIfWaiting() {
                 synchronized (AsyncDirectTcpTransport.this) {
-                    ByteBuffer head = writeQueue.peek();
-                    if (head != null && head.hasRemaining()) {
+                    releaseWrittenPackets();
+                    if (!writeQueue.isEmpty()) {
                         startAsyncWrite();
-                    } else if (head != null) {
-                        writeQueue.remove();
-                        startNextWriteIfWaiting();
                     } else {
                         writingNow.set(false);
                     }
@@ -158,20 +156,58 @@ public class AsyncDirectTcpTransport<D extends PacketData<?>, P extends Packet<?
         });
     }
 
-    private ByteBuffer prepareBufferToSend(P packet) {
+    /**
+     * Collect the header and body buffers of the queued packets, so that they can be sent with a single gathering
+     * write. A packet that was partially written by the previous write is picked up where it was left.
+     */
+    private ByteBuffer[] gatherPendingWrites() {
+        int packets = Math.min(writeQueue.size(), MAX_GATHERED_PACKETS);
+        ByteBuffer[] buffers = new ByteBuffer[packets * 2];
+        int i = 0;
+        for (PendingWrite pendingWrite : writeQueue) {
+            if (i == buffers.length) {
+                break;
+            }
+            buffers[i++] = pendingWrite.header;
+            buffers[i++] = pendingWrite.body;
+        }
+        return buffers;
+    }
+
+    private void releaseWrittenPackets() {
+        PendingWrite head = writeQueue.peek();
+        while (head != null && !head.hasRemaining()) {
+            writeQueue.remove();
+            handlers.getSerializer().release(head.packetData);
+            head = writeQueue.peek();
+        }
+    }
+
+    private PendingWrite prepareBufferToSend(P packet) {
         Buffer<?> packetData = handlers.getSerializer().write(packet);
-        int dataSize = packetData.available();
-        ByteBuffer toSend = ByteBuffer.allocate(dataSize + DIRECT_HEADER_SIZE);
-        toSend.order(ByteOrder.BIG_ENDIAN);
-        toSend.putInt(packetData.available()); // also writes the initial 0 byte
-        toSend.put(packetData.array(), packetData.rpos(), packetData.available());
-        ((java.nio.Buffer) toSend).flip(); // Java8/9 compatibility
-        try {
-            packetData.skip(dataSize);
-        } catch (BufferException e) {
-            throw SMBRuntimeException.Wrapper.wrap(e); // should never happen
+        ByteBuffer header = ByteBuffer.allocate(DIRECT_HEADER_SIZE);
+        header.order(ByteOrder.BIG_ENDIAN);
+        header.putInt(packetData.available()); // also writes the initial 0 byte
+        ((java.nio.Buffer) header).flip(); // Java8/9 compatibility
+        // Send the serialized packet as-is, it is released to the serializer once it has been written
+        ByteBuffer body = ByteBuffer.wrap(packetData.array(), packetData.rpos(), packetData.available());
+        return new PendingWrite(header, body, packetData);
+    }
+
+    private static class PendingWrite {
+        private final ByteBuffer header;
+        private final ByteBuffer body;
+        private final Buffer<?> packetData;
+
+        private PendingWrite(ByteBuffer header, ByteBuffer body, Buffer<?> packetData) {
+            this.header = header;
+            this.body = body;
+            this.packetData = packetData;
+        }
+
+        private boolean hasRemaining() {
+            return header.hasRemaining() || body.hasRemaining();
         }
-        return toSend;
     }
 
 }
@@ -31,7 +31,11 @@ public class PacketBufferReader {
     private int currentPacketOffset = 0;
 
     public <P extends Packet<?>> PacketBufferReader() {
-        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_CAPACITY);
+        this(READ_BUFFER_CAPACITY);
+    }
+
+    public PacketBufferReader(int capacity) {
+        this.readBuffer = ByteBuffer.allocate(capacity);
         this.readBuffer.order(ByteOrder.BIG_ENDIAN);
     }
 
@@ -21,6 +21,8 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.net.SocketFactory;
@@ -52,6 +54,7 @@ public class DirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> im
     private Socket socket;
     private BufferedOutputStream output;
     private PacketReader<D> packetReaderThread;
+    private final Queue<PendingPacket> pendingPackets = new ConcurrentLinkedQueue<>();
 
     private static final int INITIAL_BUFFER_SIZE = 9000;
 
@@ -63,30 +66,92 @@ public class DirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> im
 
     @Override
     public void write(P packet) throws TransportException {
-        logger.trace("Acquiring write lock to send packet << {} >>", packet);
         // isConnected only locks readlock, so check first and check once write lock
         // is acquired to prevent race
         if (!isConnected()) {
             throw new TransportException(format("Cannot write %s as transport is disconnected", packet));
         }
 
+        // Serialize without holding the lock, so that concurrent writers only contend for the socket itself
+        logger.debug("Writing packet {}", packet);
+        PendingPacket pendingPacket = new PendingPacket(packet, handlers.getSerializer().write(packet));
+        pendingPackets.add(pendingPacket);
+        writePendingPackets(pendingPacket);
+    }
+
+    /**
+     * Whichever thread gets hold of the write lock writes the pending packets up to and including its own packet, and
+     * flushes once for the whole batch. A thread waiting for the lock finds its packet already written, or failed, when
+     * it was part of an earlier batch. Every batch only contains packets that were queued before the writer's own
+     * packet, so a writer never keeps on writing packets of other threads under sustained load.
+     */
+    private void writePendingPackets(PendingPacket ownPacket) throws TransportException {
+        IOException failure = null;
+        boolean othersFailed = false;
         lock.writeLock().lock();
         try {
+            if (ownPacket.done) {
+                if (ownPacket.failure != null) {
+                    throw new TransportException(ownPacket.failure);
+                }
+                return;
+            }
             if (!isConnected()) {
-                throw new TransportException(format("Cannot write %s as transport got disconnected", packet));
+                failure = new TransportException(format("Cannot write %s as transport got disconnected", ownPacket.packet));
+                othersFailed = failPendingPackets(ownPacket, failure);
+            } else {
+                int batchSize = 0;
+                PendingPacket pendingPacket = null;
+                try {
+                    do {
+                        pendingPacket = pendingPackets.poll();
+                        batchSize++;
+                        try {
+                            writeDirectTcpPacketHeader(pendingPacket.packetData.available());
+                            writePacketData(pendingPacket.packetData);
+                        } finally {
+                            pendingPacket.done = true;
+                            handlers.getSerializer().release(pendingPacket.packetData);
+                        }
+                    } while (pendingPacket != ownPacket);
+                    output.flush();
+                    logger.trace("Batch of {} packet(s) sent, lock released.", batchSize);
+                } catch (IOException ioe) {
+                    failure = ioe;
+                    pendingPacket.failure = ioe;
+                    // The packets written before in this batch may not have reached the server either
+                    othersFailed = batchSize > 1 || pendingPacket != ownPacket;
+                    othersFailed |= failPendingPackets(ownPacket, ioe);
+                }
             }
-
-            logger.debug("Writing packet {}", packet);
-            Buffer<?> packetData = handlers.getSerializer().write(packet);
-            writeDirectTcpPacketHeader(packetData.available());
-            writePacketData(packetData);
-            output.flush();
-            logger.trace("Packet {} sent, lock released.", packet);
-        } catch (IOException ioe) {
-            throw new TransportException(ioe);
         } finally {
             lock.writeLock().unlock();
         }
+
+        if (failure != null) {
+            if (othersFailed) {
+                // Packets of other threads were lost, let the receiver fail their requests as well
+                handlers.getReceiver().handleError(failure);
+            }
+            throw failure instanceof TransportException ? (TransportException) failure : new TransportException(failure);
+        }
+    }
+
+    /**
+     * Fail all packets that are still queued, their writers throw the failure when they get hold of the lock.
+     *
+     * @return whether packets of other threads were failed
+     */
+    private boolean failPendingPackets(PendingPacket ownPacket, IOException failure) {
+        boolean othersFailed = false;
+        PendingPacket pendingPacket;
+        while ((pendingPacket = pendingPackets.poll()) != null) {
+            othersFailed |= pendingPacket != ownPacket;
+            pendingPacket.failure = failure;
+            pendingPacket.done = true;
+            handlers.getSerializer().release(pendingPacket.packetData);
+        }
+        return othersFailed;
     }
 
     @Override
@@ -166,4 +231,17 @@ public class DirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> im
         output.write((byte) (size & 0xFF));
     }
 
+    private static class PendingPacket {
+        private final Packet<?> packet;
+        private final Buffer<?> packetData;
+        // Only accessed while holding the write lock
+        private boolean done;
+        private IOException failure;
+
+        private PendingPacket(Packet<?> packet, Buffer<?> packetData) {
+            this.packet = packet;
+            this.packetData = packetData;
+        }
+    }
+
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.transport.tcp.nio;
+
+import com.hierynomus.protocol.Packet;
+import com.hierynomus.protocol.PacketData;
+import com.hierynomus.protocol.commons.buffer.Buffer;
+import com.hierynomus.protocol.transport.PacketHandlers;
+import com.hierynomus.protocol.transport.TransportException;
+import com.hierynomus.protocol.transport.TransportLayer;
+import com.hierynomus.smbj.transport.tcp.async.PacketBufferReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.String.format;
+
+/**
+ * A transport layer over Direct TCP/IP that uses a non-blocking {@link SocketChannel}. Instead of a reader thread per
+ * connection, the channel is registered with one of the shared {@link SelectorThread}s of its factory, which reads
+ * and dispatches the received packets. Packets are written by the calling thread as far as the socket accepts them,
+ * the remainder is written by the selector thread once the socket becomes writable.
+ * <p>
+ * The selector thread only frames the received packets, the receiver is expected to process them elsewhere, see
+ * {@link com.hierynomus.smbj.SmbConfig#getResponseProcessingThreads()}.
+ */
+public class NioDirectTcpTransport<D extends PacketData<?>, P extends Packet<?>> implements TransportLayer<P> {
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    private static final int DIRECT_HEADER_SIZE = 4;
+    private static final int MAX_GATHERED_PACKETS = 64;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final PacketHandlers<D, P> handlers;
+    private final SelectorThread selectorThread;
+    private final SelectorThread.KeyHolder keyHolder = new SelectorThread.KeyHolder();
+    private final int readBufferSize;
+    private final int socketBufferSize;
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+
+    private SocketChannel channel;
+    private PacketBufferReader packetBufferReader;
+    private String remoteHostname;
+
+    // Guarded by writeQueue, the queue is only non-empty while waiting for the socket to become writable.
+    private final Queue<PendingWrite> writeQueue = new ArrayDeque<>();
+    private boolean waitingForWritable;
+
+    NioDirectTcpTransport(PacketHandlers<D, P> handlers, SelectorThread selectorThread, int readBufferSize, int socketBufferSize) {
+        this.handlers = handlers;
+        this.selectorThread = selectorThread;
+        this.readBufferSize = readBufferSize;
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    @Override
+    public void write(P packet) throws TransportException {
+        if (!isConnected()) {
+            throw new TransportException(format("Cannot write %s as transport is disconnected", packet));
+        }
+        PendingWrite pendingWrite = prepareBufferToSend(packet); // Serialize first, as it might throw
+        logger.trace("Sending packet << {} >>", packet);
+        synchronized (writeQueue) {
+            writeQueue.add(pendingWrite);
+            if (writeQueue.size() == 1) {
+                try {
+                    writeQueued();
+                } catch (IOException e) {
+                    throw new TransportException(e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void connect(InetSocketAddress remoteAddress) throws IOException {
+        remoteHostname = remoteAddress.getHostString();
+        channel = SocketChannel.open();
+        try {
+            Socket socket = channel.socket();
+            if (socketBufferSize > 0) {
+                socket.setReceiveBufferSize(socketBufferSize);
+                socket.setSendBufferSize(socketBufferSize);
+            }
+            socket.connect(remoteAddress, DEFAULT_CONNECT_TIMEOUT);
+            channel.configureBlocking(false);
+            packetBufferReader = new PacketBufferReader(readBufferSize);
+            connected.set(true);
+            selectorThread.register(channel, SelectionKey.OP_READ, new ChannelHandler(), keyHolder);
+        } catch (IOException e) {
+            connected.set(false);
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void disconnect() throws IOException {
+        if (!connected.getAndSet(false)) {
+            return;
+        }
+        try {
+            channel.close();
+        } finally {
+            selectorThread.cancel(keyHolder);
+            synchronized (writeQueue) {
+                PendingWrite pendingWrite;
+                while ((pendingWrite = writeQueue.poll()) != null) {
+                    handlers.getSerializer().release(pendingWrite.packetData);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected.get() && channel.isOpen();
+    }
+
+    /**
+     * Write as much of the queued packets as the socket accepts without blocking. If not everything could be written,
+     * the selector thread is asked to continue once the socket is writable again.
+     */
+    private void writeQueued() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            long written = channel.write(gatherPendingWrites());
+            releaseWrittenPackets();
+            if (written == 0) {
+                break;
+            }
+        }
+        boolean waitForWritable = !writeQueue.isEmpty();
+        if (waitForWritable != waitingForWritable) {
+            waitingForWritable = waitForWritable;
+            selectorThread.setInterestOps(keyHolder, waitForWritable ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private ByteBuffer[] gatherPendingWrites() {
+        int packets = Math.min(writeQueue.size(), MAX_GATHERED_PACKETS);
+        ByteBuffer[] buffers = new ByteBuffer[packets * 2];
+        int i = 0;
+        for (PendingWrite pendingWrite : writeQueue) {
+            if (i == buffers.length) {
+                break;
+            }
+            buffers[i++] = pendingWrite.header;
+            buffers[i++] = pendingWrite.body;
+        }
+        return buffers;
+    }
+
+    private void releaseWrittenPackets() {
+        PendingWrite head = writeQueue.peek();
+        while (head != null && !head.hasRemaining()) {
+            writeQueue.remove();
+            handlers.getSerializer().release(head.packetData);
+            head = writeQueue.peek();
+        }
+    }
+
+    private PendingWrite prepareBufferToSend(P packet) {
+        Buffer<?> packetData = handlers.getSerializer().write(packet);
+        ByteBuffer header = ByteBuffer.allocate(DIRECT_HEADER_SIZE);
+        header.order(ByteOrder.BIG_ENDIAN);
+        header.putInt(packetData.available()); // also writes the initial 0 byte
+        ((java.nio.Buffer) header).flip(); // Java8/9 compatibility
+        ByteBuffer body = ByteBuffer.wrap(packetData.array(), packetData.rpos(), packetData.available());
+        return new PendingWrite(header, body, packetData);
+    }
+
+    private void handleFailure(Throwable t) {
+        if (!connected.get()) {
+            logger.trace("Channel to {} closed locally, ignoring {}", remoteHostname, t.getClass().getSimpleName());
+            return;
+        }
+        logger.error("{} on channel to {}, closing channel: {}", t.getClass().getSimpleName(), remoteHostname, t.getMessage());
+        logger.debug("Exception was: ", t);
+        // Close the channel first, so that the receiver cannot block the selector thread waiting on this connection.
+        try {
+            disconnect();
+        } catch (IOException e) {
+            logger.debug("{} while closing channel to {} on failure: {}", e.getClass().getSimpleName(), remoteHostname, e.getMessage());
+        }
+        handlers.getReceiver().handleError(t);
+    }
+
+    private class ChannelHandler implements SelectorHandler {
+        @Override
+        public void onReadable() {
+            try {
+                int bytesRead = channel.read(packetBufferReader.getBuffer());
+                if (bytesRead < 0) {
+                    handleFailure(new EOFException("Connection closed by server"));
+                    return;
+                }
+                logger.trace("Received {} bytes", bytesRead);
+                for (byte[] packetBytes = packetBufferReader.readNext(); packetBytes != null; packetBytes = packetBufferReader.readNext()) {
+                    D packet = handlers.getPacketFactory().read(packetBytes);
+                    logger.trace("Received packet << {} >>", packet);
+                    handlers.getReceiver().handle(packet);
+                }
+            } catch (IOException | Buffer.BufferException | RuntimeException e) {
+                handleFailure(e);
+            }
+        }
+
+        @Override
+        public void onWritable() {
+            synchronized (writeQueue) {
+                try {
+                    writeQueued();
+                } catch (IOException e) {
+                    handleFailure(e);
+                }
+            }
+        }
+
+        @Override
+        public void onSelectorFailure(Throwable t) {
+            handleFailure(t);
+        }
+    }
+
+    private static class PendingWrite {
+        private final ByteBuffer header;
+        private final ByteBuffer body;
+        private final Buffer<?> packetData;
+
+        private PendingWrite(ByteBuffer header, ByteBuffer body, Buffer<?> packetData) {
+            this.header = header;
+            this.body = body;
+            this.packetData = packetData;
+        }
+
+        private boolean hasRemaining() {
+            return header.hasRemaining() || body.hasRemaining();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.transport.tcp.nio;
+
+import com.hierynomus.protocol.Packet;
+import com.hierynomus.protocol.PacketData;
+import com.hierynomus.protocol.transport.PacketHandlers;
+import com.hierynomus.protocol.transport.TransportLayer;
+import com.hierynomus.smbj.SmbConfig;
+import com.hierynomus.smbj.transport.TransportLayerFactory;
+
+/**
+ * Creates {@link NioDirectTcpTransport}s that share a small number of selector threads, instead of running a reader
+ * thread per connection. The number of threads is taken from {@link SmbConfig#getSelectorThreads()} of the first
+ * connection that is created. The threads only run while they have connections registered.
+ * <p>
+ * This transport connects directly, the {@link SmbConfig#getSocketFactory() socket factory} is not used.
+ */
+public class NioDirectTcpTransportFactory<D extends PacketData<?>, P extends Packet<?>> implements TransportLayerFactory<D, P> {
+    private SelectorGroup selectorGroup;
+
+    @Override
+    public TransportLayer<P> createTransportLayer(PacketHandlers<D, P> handlers, SmbConfig config) {
+        return new NioDirectTcpTransport<>(handlers, getSelectorGroup(config).next(), config.getTransportReadBufferSize(), config.getSocketBufferSize());
+    }
+
+    private synchronized SelectorGroup getSelectorGroup(SmbConfig config) {
+        if (selectorGroup == null) {
+            selectorGroup = new SelectorGroup(config.getSelectorThreads());
+        }
+        return selectorGroup;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.transport.tcp.nio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of {@link SelectorThread}s that connections are spread over in a round-robin fashion.
+ */
+class SelectorGroup {
+    private final SelectorThread[] threads;
+    private final AtomicInteger next = new AtomicInteger(0);
+
+    SelectorGroup(int threadCount) {
+        this.threads = new SelectorThread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new SelectorThread("SMB Selector " + (i + 1));
+        }
+    }
+
+    SelectorThread next() {
+        return threads[(next.getAndIncrement() & Integer.MAX_VALUE) % threads.length];
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.transport.tcp.nio;
+
+/**
+ * Callbacks for a channel that is registered with a {@link SelectorThread}. All methods are invoked on the selector
+ * thread, and should not block.
+ */
+interface SelectorHandler {
+
+    void onReadable();
+
+    void onWritable();
+
+    /**
+     * The selector failed, the channel will not receive any further events.
+     *
+     * @param t The cause of the failure
+     */
+    void onSelectorFailure(Throwable t);
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.transport.tcp.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread that runs a {@link Selector} for the channels registered with it. Changes to the registered channels are
+ * posted as tasks, which are run on the selector thread itself. The thread is started when the first task is posted,
+ * and stops again once it has no channels left, so an idle transport factory does not keep threads around.
+ */
+class SelectorThread implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(SelectorThread.class);
+
+    private final String name;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private Thread thread;
+
+    SelectorThread(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Register the channel with this selector for the given operations. The registration itself happens on the selector
+     * thread, and tasks posted after this call will see the registered key.
+     *
+     * @param channel The non-blocking channel to register
+     * @param ops     The initial interest set
+     * @param handler The handler that is called when the channel is ready
+     * @param keyHolder Receives the selection key once the channel is registered
+     * @throws IOException If the selector could not be opened
+     */
+    void register(final SelectableChannel channel, final int ops, final SelectorHandler handler, final KeyHolder keyHolder) throws IOException {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    keyHolder.setKey(channel.register(selector, ops, handler));
+                } catch (ClosedChannelException e) {
+                    logger.debug("Channel closed before it was registered with {}", name);
+                }
+            }
+        });
+    }
+
+    /**
+     * Change the interest set of a key registered with this selector.
+     *
+     * @param keyHolder The holder of the key to change
+     * @param ops       The new interest set
+     */
+    void setInterestOps(final KeyHolder keyHolder, final int ops) {
+        executeQuietly(new Runnable() {
+            @Override
+            public void run() {
+                SelectionKey key = keyHolder.getKey();
+                if (key != null && key.isValid()) {
+                    key.interestOps(ops);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancel the key once the channel has been closed, so that the selector can release it.
+     *
+     * @param keyHolder The holder of the key to cancel
+     */
+    void cancel(final KeyHolder keyHolder) {
+        executeQuietly(new Runnable() {
+            @Override
+            public void run() {
+                SelectionKey key = keyHolder.getKey();
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        });
+    }
+
+    private void executeQuietly(Runnable task) {
+        try {
+            execute(task);
+        } catch (IOException e) {
+            // Only happens when a new selector needs to be opened, in which case there is no key to act upon.
+            logger.debug("Could not open selector for {}: {}", name, e.getMessage());
+        }
+    }
+
+    private synchronized void execute(Runnable task) throws IOException {
+        if (thread == null) {
+            selector = Selector.open();
+            tasks.add(task);
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        Selector sel;
+        synchronized (this) {
+            sel = selector;
+        }
+        logger.debug("Started {}", name);
+        try {
+            while (true) {
+                if (runTasks()) {
+                    // Also flushes the keys that were cancelled by the tasks
+                    sel.selectNow();
+                } else {
+                    sel.select();
+                }
+                processSelectedKeys(sel);
+                if (sel.keys().isEmpty() && stopIfIdle(sel)) {
+                    logger.debug("Stopped {}, no channels left", name);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("{} failed, closing all of its channels: {}", name, e.getMessage());
+            fail(sel, e);
+        }
+    }
+
+    private boolean runTasks() {
+        boolean ran = false;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            ran = true;
+            task.run();
+        }
+        return ran;
+    }
+
+    private void processSelectedKeys(Selector sel) {
+        Iterator<SelectionKey> it = sel.selectedKeys().iterator();
+        while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            SelectorHandler handler = (SelectorHandler) key.attachment();
+            try {
+                if (key.isValid() && key.isReadable()) {
+                    handler.onReadable();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    handler.onWritable();
+                }
+            } catch (CancelledKeyException e) {
+                // The channel was closed while handling it
+            }
+        }
+    }
+
+    private synchronized boolean stopIfIdle(Selector sel) {
+        if (!tasks.isEmpty()) {
+            return false;
+        }
+        thread = null;
+        selector = null;
+        closeQuietly(sel);
+        return true;
+    }
+
+    private void fail(Selector sel, Throwable t) {
+        synchronized (this) {
+            thread = null;
+            selector = null;
+            tasks.clear();
+        }
+        for (SelectionKey key : sel.keys()) {
+            ((SelectorHandler) key.attachment()).onSelectorFailure(t);
+        }
+        closeQuietly(sel);
+    }
+
+    private void closeQuietly(Selector sel) {
+        try {
+            sel.close();
+        } catch (IOException e) {
+            logger.debug("{} while closing selector of {}: {}", e.getClass().getSimpleName(), name, e.getMessage());
+        }
+    }
+
+    /**
+     * The selection key of a channel, which only becomes known once the selector thread has registered it.
+     */
+    static class KeyHolder {
+        private volatile SelectionKey key;
+
+        SelectionKey getKey() {
+            return key;
+        }
+
+        void setKey(SelectionKey key) {
+            this.key = key;
+        }
+    }
+}
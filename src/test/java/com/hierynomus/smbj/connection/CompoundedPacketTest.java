@@ -0,0 +1,309 @@
+/*
+ * Copyright (C)2016 - SMBJ Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hierynomus.smbj.connection;
+
+import com.hierynomus.msdtyp.AccessMask;
+import com.hierynomus.mssmb2.SMB2Dialect;
+import com.hierynomus.mssmb2.SMB2FileId;
+import com.hierynomus.mssmb2.SMB2MessageCommandCode;
+import com.hierynomus.mssmb2.SMB2MessageConverter;
+import com.hierynomus.mssmb2.SMB2Packet;
+import com.hierynomus.mssmb2.SMB2PacketData;
+import com.hierynomus.mssmb2.messages.SMB2Close;
+import com.hierynomus.mssmb2.messages.SMB2CreateRequest;
+import com.hierynomus.mssmb2.messages.SMB2CreateResponse;
+import com.hierynomus.mssmb2.messages.SMB2QueryInfoResponse;
+import com.hierynomus.mssmb2.messages.SMB2ReadRequest;
+import com.hierynomus.mssmb2.messages.SMB2ReadResponse;
+import com.hierynomus.security.jce.JceSecurityProvider;
+import com.hierynomus.smb.SMBBuffer;
+import com.hierynomus.smbj.common.SmbPath;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static com.hierynomus.mssmb2.SMB2MessageCommandCode.SMB2_CLOSE;
+import static com.hierynomus.mssmb2.SMB2MessageCommandCode.SMB2_CREATE;
+import static com.hierynomus.mssmb2.SMB2MessageCommandCode.SMB2_QUERY_INFO;
+import static com.hierynomus.mssmb2.SMB2MessageCommandCode.SMB2_READ;
+import static com.hierynomus.mssmb2.SMB2MessageFlag.SMB2_FLAGS_SIGNED;
+import static com.hierynomus.protocol.commons.EnumWithValue.EnumUtils.isSet;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Encodes compounded request chains and decodes compounded response chains [MS-SMB2] 3.2.4.1.4 and 3.2.5.1.
+ */
+public class CompoundedPacketTest {
+    private static final long SESSION_ID = 0x1234L;
+    private static final long TREE_ID = 7L;
+    private static final byte[] DATA = "The quick brown fox jumps over the lazy dog".getBytes();
+    private static final byte[] INFO = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 };
+    private static final SMB2FileId FILE_ID = new SMB2FileId(
+            new byte[] { 0x11, 0x11, 0, 0, 0, 0, 0, 0 }, new byte[] { 0x22, 0x22, 0, 0, 0, 0, 0, 0 });
+
+    private final PacketSignatory signatory = new PacketSignatory(new JceSecurityProvider());
+    private final SecretKey key = new SecretKeySpec(new byte[16], "HmacSHA256");
+    private final SMB2MessageConverter converter = new SMB2MessageConverter();
+
+    @Test
+    public void shouldAlignRequestsAndLinkThemWithNextCommand() throws Exception {
+        List<SMB2Packet> requests = createReadClose();
+        int createLength = length(requests.get(0));
+        assertTrue("The CREATE request should need padding", createLength % 8 != 0);
+
+        byte[] frame = write(new CompoundedPacket(requests, signatory, null));
+
+        SMB2PacketData element = new SMB2PacketData(frame);
+        assertEquals(0, element.getHeader().getHeaderStartPosition());
+        assertEquals(createLength + 8 - createLength % 8, element.getHeader().getNextCommandOffset());
+        for (int i = createLength; i < element.getHeader().getNextCommandOffset(); i++) {
+            assertEquals("Padding byte " + i, 0, frame[i]);
+        }
+
+        SMB2MessageCommandCode[] commands = { SMB2_CREATE, SMB2_READ, SMB2_CLOSE };
+        int start = 0;
+        for (int i = 0; i < commands.length; i++) {
+            assertEquals(start, element.getHeader().getHeaderStartPosition());
+            assertEquals(0, start % 8);
+            assertEquals(commands[i], element.getHeader().getMessage());
+            assertEquals(10 + i, element.getHeader().getMessageId());
+            if (i < commands.length - 1) {
+                assertTrue(element.isCompounded());
+                start += element.getHeader().getNextCommandOffset();
+            } else {
+                assertEquals(0, element.getHeader().getNextCommandOffset());
+                assertEquals(frame.length, element.getHeader().getMessageEndPosition());
+            }
+            element = element.next();
+        }
+        assertNull(element);
+    }
+
+    @Test
+    public void shouldSignEveryRequestOverItsOwnBytes() throws Exception {
+        byte[] frame = write(new CompoundedPacket(createReadClose(), signatory, key));
+
+        int count = 0;
+        for (SMB2PacketData element = new SMB2PacketData(frame); element != null; element = element.next()) {
+            assertTrue("Element " + count + " should be signed", isSet(element.getHeader().getFlags(), SMB2_FLAGS_SIGNED));
+            assertTrue("Element " + count + " should verify", signatory.verify(element, key));
+            count++;
+        }
+        assertEquals(3, count);
+
+        // Tampering with the READ request only invalidates its own signature
+        SMB2PacketData create = new SMB2PacketData(frame);
+        frame[create.getHeader().getNextCommandOffset() + 64 + 4] ^= 1;
+        create = new SMB2PacketData(frame);
+        SMB2PacketData read = create.next();
+        SMB2PacketData close = read.next();
+        assertTrue(signatory.verify(create, key));
+        assertFalse(signatory.verify(read, key));
+        assertTrue(signatory.verify(close, key));
+    }
+
+    @Test
+    public void shouldDecodeAndVerifySignedCreateReadCloseResponses() throws Exception {
+        byte[] frame = responseChain(new SMB2MessageCommandCode[] { SMB2_CREATE, SMB2_READ, SMB2_CLOSE });
+
+        SMB2PacketData create = new SMB2PacketData(frame);
+        assertTrue(signatory.verify(create, key));
+        assertCreateResponse(converter.readPacket(null, create));
+
+        SMB2PacketData read = create.next();
+        assertEquals(160, read.getHeader().getHeaderStartPosition());
+        assertTrue(signatory.verify(read, key));
+        SMB2ReadResponse readResponse = (SMB2ReadResponse) converter.readPacket(null, read);
+        assertArrayEquals(DATA, readResponse.getData());
+
+        SMB2PacketData close = read.next();
+        assertEquals(288, close.getHeader().getHeaderStartPosition());
+        assertTrue(signatory.verify(close, key));
+        assertTrue(converter.readPacket(null, close) instanceof SMB2Close);
+        assertNull(close.next());
+    }
+
+    @Test
+    public void shouldDecodeAndVerifySignedCreateQueryInfoCloseResponses() throws Exception {
+        byte[] frame = responseChain(new SMB2MessageCommandCode[] { SMB2_CREATE, SMB2_QUERY_INFO, SMB2_CLOSE });
+
+        SMB2PacketData create = new SMB2PacketData(frame);
+        assertTrue(signatory.verify(create, key));
+        assertCreateResponse(converter.readPacket(null, create));
+
+        SMB2PacketData query = create.next();
+        assertEquals(160, query.getHeader().getHeaderStartPosition());
+        assertTrue(signatory.verify(query, key));
+        SMB2QueryInfoResponse queryResponse = (SMB2QueryInfoResponse) converter.readPacket(null, query);
+        assertArrayEquals(INFO, queryResponse.getOutputBuffer());
+
+        SMB2PacketData close = query.next();
+        assertEquals(248, close.getHeader().getHeaderStartPosition());
+        assertTrue(signatory.verify(close, key));
+        assertTrue(converter.readPacket(null, close) instanceof SMB2Close);
+        assertNull(close.next());
+    }
+
+    @Test
+    public void shouldDecodeResponseAfterAnElementThatIsNotDecoded() throws Exception {
+        byte[] frame = responseChain(new SMB2MessageCommandCode[] { SMB2_CREATE, SMB2_READ, SMB2_CLOSE });
+
+        SMB2PacketData create = new SMB2PacketData(frame);
+        converter.readPacket(null, create);
+        // The READ response is skipped, e.g. because its request has already timed out
+        SMB2PacketData read = create.next();
+        assertTrue(signatory.verify(read, key));
+
+        SMB2PacketData close = read.next();
+        assertEquals(288, close.getHeader().getHeaderStartPosition());
+        assertTrue(signatory.verify(close, key));
+        assertTrue(converter.readPacket(null, close) instanceof SMB2Close);
+    }
+
+    private List<SMB2Packet> createReadClose() {
+        SmbPath path = new SmbPath("localhost", "share", "dir\\file1.txt");
+        List<SMB2Packet> requests = new ArrayList<>();
+        requests.add(new SMB2CreateRequest(SMB2Dialect.SMB_3_0, SESSION_ID, TREE_ID, null,
+                EnumSet.of(AccessMask.GENERIC_READ), null, null, null, null, path));
+        requests.add(new SMB2ReadRequest(SMB2Dialect.SMB_3_0, new SMB2FileId(), SESSION_ID, TREE_ID, 0, 65536));
+        requests.add(new SMB2Close(SMB2Dialect.SMB_3_0, SESSION_ID, TREE_ID, new SMB2FileId()));
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).getHeader().setMessageId(10 + i);
+        }
+        return requests;
+    }
+
+    private static int length(SMB2Packet packet) {
+        SMBBuffer buffer = new SMBBuffer();
+        packet.write(buffer);
+        return buffer.wpos();
+    }
+
+    private static byte[] write(SMB2Packet packet) {
+        SMBBuffer buffer = new SMBBuffer();
+        packet.write(buffer);
+        return Arrays.copyOf(buffer.array(), buffer.wpos());
+    }
+
+    private static void assertCreateResponse(SMB2Packet packet) {
+        SMB2CreateResponse response = (SMB2CreateResponse) packet;
+        assertEquals(DATA.length, response.getEndOfFile());
+        SMBBuffer expected = new SMBBuffer();
+        FILE_ID.write(expected);
+        SMBBuffer actual = new SMBBuffer();
+        response.getFileId().write(actual);
+        assertArrayEquals(Arrays.copyOf(expected.array(), expected.wpos()), Arrays.copyOf(actual.array(), actual.wpos()));
+    }
+
+    /**
+     * Build a signed compounded response chain the way a server sends it.
+     */
+    private byte[] responseChain(SMB2MessageCommandCode[] commands) {
+        SMBBuffer buffer = new SMBBuffer();
+        int[] starts = new int[commands.length];
+        for (int i = 0; i < commands.length; i++) {
+            starts[i] = buffer.wpos();
+            writeResponseHeader(buffer, commands[i], 10 + i, i > 0);
+            writeResponseBody(buffer, commands[i]);
+            if (i < commands.length - 1) {
+                while (buffer.wpos() % 8 != 0) {
+                    buffer.putByte((byte) 0);
+                }
+                int next = buffer.wpos() - starts[i];
+                buffer.array()[starts[i] + 20] = (byte) next;
+                buffer.array()[starts[i] + 21] = (byte) (next >> 8);
+            }
+        }
+        for (int i = 0; i < commands.length; i++) {
+            int end = i < commands.length - 1 ? starts[i + 1] : buffer.wpos();
+            signatory.signInPlace(buffer, starts[i], end - starts[i], key);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.wpos());
+    }
+
+    private static void writeResponseHeader(SMBBuffer buffer, SMB2MessageCommandCode command, long messageId, boolean related) {
+        buffer.putRawBytes(new byte[] { (byte) 0xFE, 'S', 'M', 'B' }); // ProtocolId
+        buffer.putUInt16(64); // StructureSize
+        buffer.putUInt16(1); // CreditCharge
+        buffer.putUInt32(0); // Status
+        buffer.putUInt16(command.getValue()); // Command
+        buffer.putUInt16(5); // CreditResponse
+        buffer.putUInt32(0x1 | 0x8 | (related ? 0x4 : 0)); // Flags: SERVER_TO_REDIR | SIGNED | RELATED_OPERATIONS
+        buffer.putUInt32(0); // NextCommand, patched once the element is complete
+        buffer.putLong(messageId); // MessageId
+        buffer.putUInt32(0); // Reserved
+        buffer.putUInt32(TREE_ID); // TreeId
+        buffer.putLong(SESSION_ID); // SessionId
+        buffer.putRawBytes(new byte[16]); // Signature
+    }
+
+    private static void writeResponseBody(SMBBuffer buffer, SMB2MessageCommandCode command) {
+        switch (command) {
+            case SMB2_CREATE:
+                buffer.putUInt16(89); // StructureSize
+                buffer.putByte((byte) 0); // OplockLevel
+                buffer.putByte((byte) 0); // Flags
+                buffer.putUInt32(1); // CreateAction
+                for (int i = 0; i < 4; i++) {
+                    buffer.putLong(0); // CreationTime, LastAccessTime, LastWriteTime, ChangeTime
+                }
+                buffer.putLong(4096); // AllocationSize
+                buffer.putLong(DATA.length); // EndOfFile
+                buffer.putUInt32(0x80); // FileAttributes
+                buffer.putUInt32(0); // Reserved2
+                FILE_ID.write(buffer); // FileId
+                buffer.putUInt32(0); // CreateContextsOffset
+                buffer.putUInt32(0); // CreateContextsLength
+                buffer.putByte((byte) 0); // Buffer
+                break;
+            case SMB2_READ:
+                buffer.putUInt16(17); // StructureSize
+                buffer.putByte((byte) 80); // DataOffset, relative to the header of this element
+                buffer.putByte((byte) 0); // Reserved
+                buffer.putUInt32(DATA.length); // DataLength
+                buffer.putUInt32(0); // DataRemaining
+                buffer.putUInt32(0); // Reserved2
+                buffer.putRawBytes(DATA);
+                break;
+            case SMB2_QUERY_INFO:
+                buffer.putUInt16(9); // StructureSize
+                buffer.putUInt16(72); // OutputBufferOffset, relative to the header of this element
+                buffer.putUInt32(INFO.length); // OutputBufferLength
+                buffer.putRawBytes(INFO);
+                break;
+            case SMB2_CLOSE:
+                buffer.putUInt16(60); // StructureSize
+                buffer.putUInt16(0); // Flags
+                buffer.putUInt32(0); // Reserved
+                for (int i = 0; i < 6; i++) {
+                    buffer.putLong(0); // Times, AllocationSize and EndOfFile
+                }
+                buffer.putUInt32(0x80); // FileAttributes
+                break;
+            default:
+                throw new IllegalArgumentException("No response body for " + command);
+        }
+    }
+}